@@ -0,0 +1,35 @@
+package game;
+
+/**
+ * The caverns the benchmarks run on, chosen by a size parameter and a seed so that
+ * results are comparable across commits.
+ */
+final class BenchCaverns {
+
+    private BenchCaverns() {
+    }
+
+    /**
+     * Return the caverns for seed. If size is "game", they are the caverns a game with that
+     * seed is played on (sized by the seed, up to GameState.MAX_ROWS x GameState.MAX_COLS).
+     * Otherwise size is "ROWSxCOLS" and the caverns are generated constructively at that size.
+     */
+    static CavernFactory.Caverns generate(String size, long seed) {
+        if (size.equals("game")) {
+            return CavernFactory.generate(seed);
+        }
+        int[] rc = dimensions(size);
+        return CavernFactory.generate(seed, rc[0], rc[1], Cavern.GenerationMode.CONSTRUCTIVE);
+    }
+
+    /**
+     * Return {rows, cols} for a size "ROWSxCOLS".
+     */
+    static int[] dimensions(String size) {
+        int x = size.indexOf('x');
+        if (x < 0) {
+            throw new IllegalArgumentException("size must be \"game\" or ROWSxCOLS: " + size);
+        }
+        return new int[]{Integer.parseInt(size.substring(0, x)), Integer.parseInt(size.substring(x + 1))};
+    }
+}
@@ -0,0 +1,122 @@
+package game;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cavern generation, serialization in both formats and the shortest-path queries the game
+ * makes when a phase starts.
+ * <p>
+ * Only the dig benchmarks take a generation mode, from their own state, so the others are
+ * not run once per mode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CavernBenchmark {
+
+    @Param({"25x40", "200x200"})
+    public String size;
+
+    @Param({"5", "7"})
+    public long seed;
+
+    private int rows;
+    private int cols;
+    private Cavern explore;
+    private Cavern escape;
+    private Node orb;
+    private List<String> text;
+    private byte[] binary;
+
+    @Setup
+    public void setUp() {
+        int[] rc = BenchCaverns.dimensions(size);
+        rows = rc[0];
+        cols = rc[1];
+        CavernFactory.Caverns caverns = CavernFactory.generate(seed, rows, cols, Cavern.GenerationMode.CONSTRUCTIVE);
+        explore = caverns.getExploreCavern();
+        escape = caverns.getEscapeCavern();
+        Tile o = explore.getTarget().getTile();
+        orb = escape.getNodeAt(o.getRow(), o.getColumn());
+        text = escape.serialize();
+        binary = escape.serializeBinary();
+    }
+
+    /** The generation mode of the dig benchmarks. */
+    @State(Scope.Benchmark)
+    public static class Digging {
+        @Param({"REJECTION", "CONSTRUCTIVE"})
+        public Cavern.GenerationMode mode;
+    }
+
+    @Benchmark
+    public Cavern digExploreCavern(Digging d) {
+        return Cavern.digExploreCavern(rows, cols, new Random(seed), d.mode);
+    }
+
+    @Benchmark
+    public Cavern digEscapeCavern(Digging d) {
+        Tile o = explore.getTarget().getTile();
+        return Cavern.digEscapeCavern(rows, cols, o.getRow(), o.getColumn(), new Random(seed), d.mode);
+    }
+
+    @Benchmark
+    public List<String> serialize() {
+        return escape.serialize();
+    }
+
+    @Benchmark
+    public Cavern deserialize() {
+        return Cavern.deserialize(text);
+    }
+
+    @Benchmark
+    public byte[] serializeBinary() {
+        return escape.serializeBinary();
+    }
+
+    @Benchmark
+    public Cavern deserializeBinary() {
+        return Cavern.deserializeBinary(ByteBuffer.wrap(binary));
+    }
+
+    /**
+     * The query for minTimeToExplore. A fresh cavern is not needed: the query does not
+     * cache anything unless the distance field has been built, which nothing here does.
+     */
+    @Benchmark
+    public int minPathLengthToOrb() {
+        return explore.minPathLengthToTarget(explore.getEntrance());
+    }
+
+    /** The query for the escape time limit. */
+    @Benchmark
+    public int minPathLengthToExit() {
+        return escape.minPathLengthToTarget(orb);
+    }
+
+    /** The one-sided search that builds the whole distance field, for comparison. */
+    @Benchmark
+    public int[] distanceFieldSearch() {
+        CompactGraph g = escape.getCompactGraph();
+        return ShortestPaths.distancesFrom(g, g.indexOf(escape.getTarget()));
+    }
+}
@@ -0,0 +1,183 @@
+package game;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import student.PriorityQueue;
+import student.PriorityQueueImpl;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The priority queues a solver uses, on two workloads: Dijkstra's algorithm from the exit
+ * over the escape cavern (adds, priority decreases and polls as a real search makes them),
+ * and a fixed random sequence of adds, priority changes in both directions and polls.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueueBenchmark {
+
+    @Param({"game", "200x200"})
+    public String size;
+
+    @Param({"5", "7"})
+    public long seed;
+
+    private CompactGraph graph;
+    private int exit;
+    /** The random workload: element, priority and kind (0 add, 1 change, 2 poll) of each operation. */
+    private int[] elements;
+    private double[] priorities;
+    private byte[] kinds;
+
+    @Setup
+    public void setUp() {
+        Cavern escape = BenchCaverns.generate(size, seed).getEscapeCavern();
+        graph = escape.getCompactGraph();
+        exit = graph.indexOf(escape.getTarget());
+
+        // Each element is added once, in order, and the other operations are changes of
+        // random elements added so far and polls. A replay skips the changes of elements
+        // that have already been polled.
+        int n = graph.size();
+        Random rand = new Random(seed);
+        elements = new int[3 * n];
+        priorities = new double[3 * n];
+        kinds = new byte[3 * n];
+        int added = 0;
+        for (int i = 0; i < elements.length; i++) {
+            int k = rand.nextInt(3);
+            if (added < n && (k == 0 || added == 0)) {
+                kinds[i] = 0;
+                elements[i] = added++;
+            } else {
+                kinds[i] = (byte) (k == 1 ? 1 : 2);
+                elements[i] = rand.nextInt(added);
+            }
+            priorities[i] = rand.nextDouble() * 1000;
+        }
+    }
+
+    @Benchmark
+    public int[] dijkstraInternalMinHeap() {
+        int n = graph.size();
+        int[] distance = new int[n];
+        Arrays.fill(distance, Integer.MAX_VALUE);
+        InternalMinHeap<Node> heap = new InternalMinHeap<>(n, node -> graph.indexOf(node));
+        distance[exit] = 0;
+        heap.add(graph.node(exit), 0);
+        while (!heap.isEmpty()) {
+            int v = graph.indexOf(heap.poll());
+            relax(v, distance, (w, d, fresh) -> {
+                if (fresh) {
+                    heap.add(graph.node(w), d);
+                } else {
+                    heap.changePriority(graph.node(w), d);
+                }
+            });
+        }
+        return distance;
+    }
+
+    @Benchmark
+    public int[] dijkstraPriorityQueueImpl() {
+        int n = graph.size();
+        int[] distance = new int[n];
+        Arrays.fill(distance, Integer.MAX_VALUE);
+        PriorityQueue<Node> queue = new PriorityQueueImpl<>();
+        distance[exit] = 0;
+        queue.add(graph.node(exit), 0);
+        while (queue.size() > 0) {
+            int v = graph.indexOf(queue.poll());
+            relax(v, distance, (w, d, fresh) -> {
+                if (fresh) {
+                    queue.add(graph.node(w), d);
+                } else {
+                    queue.updatePriority(graph.node(w), d);
+                }
+            });
+        }
+        return distance;
+    }
+
+    @Benchmark
+    public int randomInternalMinHeap() {
+        InternalMinHeap<Integer> heap = new InternalMinHeap<>(graph.size(), Integer::intValue);
+        boolean[] in = new boolean[graph.size()];
+        int polled = 0;
+        for (int i = 0; i < kinds.length; i++) {
+            int v = elements[i];
+            if (kinds[i] == 0) {
+                heap.add(v, priorities[i]);
+                in[v] = true;
+            } else if (kinds[i] == 1) {
+                if (in[v]) {
+                    heap.changePriority(v, priorities[i]);
+                }
+            } else if (!heap.isEmpty()) {
+                in[heap.poll()] = false;
+                polled++;
+            }
+        }
+        return polled;
+    }
+
+    @Benchmark
+    public int randomPriorityQueueImpl() {
+        PriorityQueue<Integer> queue = new PriorityQueueImpl<>();
+        boolean[] in = new boolean[graph.size()];
+        int polled = 0;
+        for (int i = 0; i < kinds.length; i++) {
+            int v = elements[i];
+            if (kinds[i] == 0) {
+                queue.add(v, priorities[i]);
+                in[v] = true;
+            } else if (kinds[i] == 1) {
+                if (in[v]) {
+                    queue.updatePriority(v, priorities[i]);
+                }
+            } else if (queue.size() > 0) {
+                in[queue.poll()] = false;
+                polled++;
+            }
+        }
+        return polled;
+    }
+
+    /**
+     * Relax the edges out of v, which has just been polled, calling update for each
+     * neighbour whose distance improves.
+     */
+    private void relax(int v, int[] distance, Update update) {
+        for (int i = graph.neighbourStart(v); i < graph.neighbourEnd(v); i++) {
+            int w = graph.neighbour(i);
+            int d = distance[v] + graph.weight(i);
+            if (d < distance[w]) {
+                boolean fresh = distance[w] == Integer.MAX_VALUE;
+                distance[w] = d;
+                update.apply(w, d, fresh);
+            }
+        }
+    }
+
+    /**
+     * The action of a search on a neighbour whose distance improved.
+     */
+    private interface Update {
+        void apply(int w, int distance, boolean fresh);
+    }
+}
@@ -0,0 +1,105 @@
+package game;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import student.EscapePath;
+import student.EscapePathFinders;
+import student.Explorer;
+import student.PlanningBudget;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The solver: Explorer.explore, and findEscapePath of each registered EscapePathFinder from
+ * where the escape starts after a successful explore phase.
+ * <p>
+ * Each benchmark has its own state, so each call builds only the game it uses, and only
+ * findEscapePath is run once per finder. Both are measured one call at a time
+ * (single-shot), with a fresh game for each call: an explore phase takes well under a
+ * millisecond on a game-size cavern, too short for a setup per call in average-time
+ * mode. The stack and simple finders plan until their budget (in ms) runs out, so each of
+ * their calls takes about that long; the shortest finder returns at once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+public class SolverBenchmark {
+
+    @Param({"game", "200x200"})
+    public String size;
+
+    @Param({"5", "7"})
+    public long seed;
+
+    private CavernFactory.Caverns caverns;
+
+    @Setup(Level.Trial)
+    public void setUpCaverns() {
+        caverns = BenchCaverns.generate(size, seed);
+        // Build the cached graph and distance field once, as the first game on a cavern does.
+        GameState warm = GameState.quietGame(caverns, new Explorer());
+        warm.explore();
+        warm.startEscape();
+        warm.getDistanceToExit(warm.getCurrentNode());
+    }
+
+    /** A game that has not started, for each call of explore, since explore moves the explorer. */
+    @State(Scope.Thread)
+    public static class ExploreGame {
+        private GameState state;
+
+        @Setup(Level.Iteration)
+        public void setUp(SolverBenchmark b) {
+            state = GameState.quietGame(b.caverns, new Explorer());
+        }
+    }
+
+    /**
+     * A game whose explore phase has just succeeded, for each call of findEscapePath, and
+     * the finder and budget to plan with. Gold is only picked up when an explorer follows
+     * its plan, which findEscapePath does not do.
+     */
+    @State(Scope.Thread)
+    public static class EscapeGame {
+        @Param({"stack", "simple", "shortest"})
+        public String finder;
+
+        @Param({"50"})
+        public long budget;
+
+        private GameState state;
+
+        @Setup(Level.Iteration)
+        public void setUp(SolverBenchmark b) {
+            state = GameState.quietGame(b.caverns, new Explorer(finder));
+            state.explore();
+            state.startEscape();
+        }
+    }
+
+    @Benchmark
+    @Warmup(iterations = 20)
+    @Measurement(iterations = 50)
+    public GameState explore(ExploreGame g) {
+        g.state.explore();
+        return g.state;
+    }
+
+    @Benchmark
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 10)
+    public EscapePath findEscapePath(EscapeGame g) {
+        return EscapePathFinders.create(g.finder, g.state).findEscapePath(g.state, new PlanningBudget(g.budget));
+    }
+}
@@ -0,0 +1,121 @@
+package game;
+
+import student.Explorer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
+
+/**
+ * An instance plays many seeded games concurrently, without a GUI, and returns a
+ * GameResult for each of them.
+ * <p>
+ * Each game generates its own caverns and is played by its own Explorer on its own
+ * GameState, so games share no state. The games are quiet, and so are their explorers and
+ * the finders they plan with, so nothing is printed while a batch runs. The processors are
+ * shared between the games in flight: each explorer plans its escape with the available
+ * processors divided by the number of games played at once (at least 1) threads, so how
+ * many cores the machine has does not change how many threads compete for each budget.
+ */
+public final class BatchEngine {
+
+    private final int parallelism;
+
+    /**
+     * Constructor: an engine that plays games on all available processors.
+     */
+    public BatchEngine() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor: an engine that plays games on parallelism threads.
+     */
+    public BatchEngine(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("BatchEngine: parallelism must be positive");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Return the number of threads this engine plays games on.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Play a game for each seed in seeds and return their results, in the order of seeds.
+     * A game whose caverns cannot be generated, or that cannot be set up, has a result with
+     * both phases errored whose getError() says why.
+     */
+    public List<GameResult> run(long... seeds) {
+        return run(Explorer::new, seeds);
+    }
+
+    /**
+     * Play a game for each seed in seeds, each with a new Explorer from explorers,
+     * and return their results, in the order of seeds.
+     * explorers is called from several threads at once.
+     */
+    public List<GameResult> run(Supplier<Explorer> explorers, long... seeds) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        int planningThreads = planningThreads(Math.min(parallelism, seeds.length));
+        try {
+            List<ForkJoinTask<GameResult>> tasks = new ArrayList<>(seeds.length);
+            for (long seed : seeds) {
+                tasks.add(pool.submit(() -> play(seed, explorers, planningThreads)));
+            }
+            GameResult[] results = new GameResult[seeds.length];
+            for (int i = 0; i < seeds.length; i++) {
+                try {
+                    results[i] = tasks.get(i).get();
+                } catch (ExecutionException e) {
+                    results[i] = GameResult.failed(seeds[i], e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for games", e);
+                }
+            }
+            return Arrays.asList(results);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Return the number of threads each explorer may plan with when games are played at once.
+     */
+    private static int planningThreads(int games) {
+        return Math.max(Runtime.getRuntime().availableProcessors() / Math.max(games, 1), 1);
+    }
+
+    /**
+     * Generate the caverns for seed and play a quiet game on them with a new explorer that
+     * plans with planningThreads threads.
+     * Return a failed result if the caverns cannot be generated or the game cannot be set up.
+     */
+    private static GameResult play(long seed, Supplier<Explorer> explorers, int planningThreads) {
+        long start = System.nanoTime();
+        CavernFactory.Caverns caverns;
+        try {
+            caverns = CavernFactory.generate(seed);
+        } catch (RuntimeException e) {
+            return GameResult.failedGeneration(seed, System.nanoTime() - start, e);
+        }
+        long generationNanos = System.nanoTime() - start;
+        try {
+            Explorer explorer = explorers.get();
+            explorer.setPlanningThreads(planningThreads);
+            return GameState.runQuietGame(caverns, generationNanos, explorer);
+        } catch (RuntimeException e) {
+            return GameResult.failed(seed, caverns.getExploreCavern().getGenerationAttempts()
+                    + caverns.getEscapeCavern().getGenerationAttempts(), generationNanos, e);
+        }
+    }
+}
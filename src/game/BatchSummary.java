@@ -0,0 +1,249 @@
+package game;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * An instance aggregates the results of a batch of games: how many succeeded or errored
+ * in each phase, and the distributions of the score, gold, bonus, explore steps, the
+ * caverns generated per game and the time each phase took.
+ */
+public final class BatchSummary {
+    private final int games;
+    private final int exploreSuccesses;
+    private final int escapeSuccesses;
+    private final int errors;
+    private final Distribution score;
+    private final Distribution gold;
+    private final Distribution bonus;
+    private final Distribution exploreSteps;
+    private final Distribution generationAttempts;
+    private final Distribution generationMillis;
+    private final Distribution exploreMillis;
+    private final Distribution escapeMillis;
+
+    /**
+     * Constructor: the summary of results.
+     */
+    public BatchSummary(List<GameResult> results) {
+        games = results.size();
+        int explored = 0;
+        int escaped = 0;
+        int errored = 0;
+        for (GameResult r : results) {
+            explored += r.getExploreSucceeded() ? 1 : 0;
+            escaped += r.getEscapeSucceeded() ? 1 : 0;
+            errored += r.getExploreErrored() || r.getEscapeErrored() ? 1 : 0;
+        }
+        exploreSuccesses = explored;
+        escapeSuccesses = escaped;
+        errors = errored;
+        score = new Distribution(results, GameResult::getScore);
+        gold = new Distribution(results, GameResult::getGold);
+        bonus = new Distribution(results, GameResult::getBonus);
+        exploreSteps = new Distribution(results, GameResult::getExploreSteps);
+        generationAttempts = new Distribution(results, GameResult::getGenerationAttempts);
+        generationMillis = new Distribution(results, r -> r.getGenerationNanos() / 1e6);
+        exploreMillis = new Distribution(results, r -> r.getExploreNanos() / 1e6);
+        escapeMillis = new Distribution(results, r -> r.getEscapeNanos() / 1e6);
+    }
+
+    /**
+     * Return the number of games.
+     */
+    public int getGames() {
+        return games;
+    }
+
+    /**
+     * Return the number of games whose explore phase succeeded.
+     */
+    public int getExploreSuccesses() {
+        return exploreSuccesses;
+    }
+
+    /**
+     * Return the number of games whose escape phase succeeded.
+     */
+    public int getEscapeSuccesses() {
+        return escapeSuccesses;
+    }
+
+    /**
+     * Return the number of games in which either phase threw an exception.
+     */
+    public int getErrors() {
+        return errors;
+    }
+
+    /**
+     * Return the distribution of scores.
+     */
+    public Distribution getScore() {
+        return score;
+    }
+
+    /**
+     * Return the distribution of gold collected.
+     */
+    public Distribution getGold() {
+        return gold;
+    }
+
+    /**
+     * Return the distribution of bonus multipliers.
+     */
+    public Distribution getBonus() {
+        return bonus;
+    }
+
+    /**
+     * Return the distribution of explore steps.
+     */
+    public Distribution getExploreSteps() {
+        return exploreSteps;
+    }
+
+    /**
+     * Return the distribution of the number of caverns generated per game, retries included.
+     */
+    public Distribution getGenerationAttempts() {
+        return generationAttempts;
+    }
+
+    /**
+     * Return the distribution of cavern generation times, in milliseconds.
+     */
+    public Distribution getGenerationMillis() {
+        return generationMillis;
+    }
+
+    /**
+     * Return the distribution of explore phase times, in milliseconds.
+     */
+    public Distribution getExploreMillis() {
+        return exploreMillis;
+    }
+
+    /**
+     * Return the distribution of escape phase times, in milliseconds.
+     */
+    public Distribution getEscapeMillis() {
+        return escapeMillis;
+    }
+
+    /**
+     * Return a table of this summary, one line per measure.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Games            : %d (explore ok %d, escape ok %d, errors %d)%n",
+                games, exploreSuccesses, escapeSuccesses, errors));
+        sb.append(String.format("%-17s%10s %10s %10s %10s %10s %10s%n",
+                "", "mean", "stddev", "min", "median", "p90", "max"));
+        append(sb, "Score", score);
+        append(sb, "Gold", gold);
+        append(sb, "Bonus", bonus);
+        append(sb, "Explore steps", exploreSteps);
+        append(sb, "Gen attempts", generationAttempts);
+        append(sb, "Generation (ms)", generationMillis);
+        append(sb, "Explore (ms)", exploreMillis);
+        append(sb, "Escape (ms)", escapeMillis);
+        return sb.toString();
+    }
+
+    /**
+     * Append a line for distribution d, called name, to sb.
+     */
+    private static void append(StringBuilder sb, String name, Distribution d) {
+        sb.append(String.format("%-17s%10.2f %10.2f %10.2f %10.2f %10.2f %10.2f%n", name + " :",
+                d.getMean(), d.getStandardDeviation(), d.getMin(), d.getMedian(), d.percentile(90), d.getMax()));
+    }
+
+    /**
+     * An instance is the distribution of one measure over the games of a batch.
+     */
+    public static final class Distribution {
+        /** The values of the measure, in ascending order. */
+        private final double[] values;
+        private final double mean;
+        private final double standardDeviation;
+
+        /**
+         * Constructor: the distribution of measure over results.
+         */
+        private Distribution(List<GameResult> results, ToDoubleFunction<GameResult> measure) {
+            values = new double[results.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = measure.applyAsDouble(results.get(i));
+            }
+            Arrays.sort(values);
+            double sum = 0;
+            for (double v : values) {
+                sum += v;
+            }
+            mean = values.length == 0 ? 0 : sum / values.length;
+            double squares = 0;
+            for (double v : values) {
+                squares += (v - mean) * (v - mean);
+            }
+            standardDeviation = values.length == 0 ? 0 : Math.sqrt(squares / values.length);
+        }
+
+        /**
+         * Return the number of values.
+         */
+        public int getCount() {
+            return values.length;
+        }
+
+        /**
+         * Return the mean of the values, or 0 if there are none.
+         */
+        public double getMean() {
+            return mean;
+        }
+
+        /**
+         * Return the (population) standard deviation of the values, or 0 if there are none.
+         */
+        public double getStandardDeviation() {
+            return standardDeviation;
+        }
+
+        /**
+         * Return the smallest value, or 0 if there are none.
+         */
+        public double getMin() {
+            return percentile(0);
+        }
+
+        /**
+         * Return the median value, or 0 if there are none.
+         */
+        public double getMedian() {
+            return percentile(50);
+        }
+
+        /**
+         * Return the largest value, or 0 if there are none.
+         */
+        public double getMax() {
+            return percentile(100);
+        }
+
+        /**
+         * Return the p-th percentile of the values (nearest rank), or 0 if there are none.
+         * Precondition: 0 <= p <= 100.
+         */
+        public double percentile(double p) {
+            if (values.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(p / 100 * values.length);
+            return values[Math.max(rank - 1, 0)];
+        }
+    }
+}
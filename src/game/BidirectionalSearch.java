@@ -0,0 +1,186 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Point-to-point shortest paths over a CompactGraph by bidirectional A*.
+ * <p>
+ * A forward search from the source and a reverse search from the target run in turn,
+ * each expanding the side whose next key is smaller, until the best path found through a
+ * node labelled by both is provably shortest. Both are guided by the consistent average
+ * potential p(v) = (h_t(v) - h_s(v)) / 2, where h_s and h_t are the Manhattan distances to
+ * the source and target: every edge joins grid neighbours and has length at least 1, so
+ * the edge lengths reduced by p are non-negative, and each side is Dijkstra's algorithm
+ * on the reduced lengths. Keys are kept doubled so they stay integers.
+ * <p>
+ * Each side settles only the nodes that lie roughly between source and target, so on a
+ * large cavern a query settles a fraction of what a one-sided search to the target would.
+ */
+final class BidirectionalSearch {
+    private final CompactGraph g;
+    private final int source;
+    private final int target;
+    private final Side forward;
+    private final Side reverse;
+    /** The length of the shortest path found so far, or Integer.MAX_VALUE if none. */
+    private int best = Integer.MAX_VALUE;
+    /** A node on the shortest path found so far, labelled by both sides. */
+    private int meeting = -1;
+
+    /**
+     * Constructor: a search of g from source to target that has not started.
+     */
+    private BidirectionalSearch(CompactGraph g, int source, int target) {
+        this.g = g;
+        this.source = source;
+        this.target = target;
+        forward = new Side(g.size(), 1);
+        reverse = new Side(g.size(), -1);
+    }
+
+    /**
+     * Return a shortest route from source to target in g, with the Nodes of g.
+     * Precondition: source and target are indices of nodes of g.
+     */
+    static Route route(CompactGraph g, int source, int target) {
+        BidirectionalSearch s = new BidirectionalSearch(g, source, target);
+        s.run();
+        List<Node> nodes = new ArrayList<>();
+        if (s.meeting >= 0) {
+            for (int v : s.path()) {
+                nodes.add(g.node(v));
+            }
+        }
+        return new Route(s.meeting >= 0 ? s.best : -1, nodes,
+                s.forward.settledCount + s.reverse.settledCount);
+    }
+
+    /**
+     * Search until the shortest path is known or shown not to exist.
+     */
+    private void run() {
+        forward.label(this, source, 0, -1);
+        reverse.label(this, target, 0, -1);
+        while (!forward.heap.isEmpty() && !reverse.heap.isEmpty()) {
+            long fk = forward.heap.priority(forward.heap.peek());
+            long rk = reverse.heap.priority(reverse.heap.peek());
+            // Any path not yet found has doubled length at least fk + rk: the constant
+            // potentials of source and target cancel between the two sides' keys.
+            if (best != Integer.MAX_VALUE && fk + rk >= 2L * best) {
+                return;
+            }
+            // Expand the side whose smallest reduced distance from its root is smaller.
+            if (fk - potential(source) <= rk + potential(target)) {
+                forward.expand(this);
+            } else {
+                reverse.expand(this);
+            }
+        }
+    }
+
+    /**
+     * Return twice the potential of v: the Manhattan distance from v to the target
+     * minus that from v to the source.
+     */
+    private long potential(int v) {
+        return manhattan(v, target) - manhattan(v, source);
+    }
+
+    /**
+     * Return the Manhattan distance between the tiles of v and w.
+     */
+    private int manhattan(int v, int w) {
+        return Math.abs(g.row(v) - g.row(w)) + Math.abs(g.column(v) - g.column(w));
+    }
+
+    /**
+     * Return the nodes of the shortest path found, from source to target.
+     * Precondition: meeting >= 0.
+     */
+    private int[] path() {
+        int toSource = 0;
+        for (int v = meeting; v >= 0; v = forward.predecessor[v]) {
+            toSource++;
+        }
+        int toTarget = 0;
+        for (int v = reverse.predecessor[meeting]; v >= 0; v = reverse.predecessor[v]) {
+            toTarget++;
+        }
+        int[] path = new int[toSource + toTarget];
+        int i = toSource;
+        for (int v = meeting; v >= 0; v = forward.predecessor[v]) {
+            path[--i] = v;
+        }
+        i = toSource;
+        for (int v = reverse.predecessor[meeting]; v >= 0; v = reverse.predecessor[v]) {
+            path[i++] = v;
+        }
+        return path;
+    }
+
+    /**
+     * An instance is the state of one direction of the search. Edges are symmetric,
+     * so both directions use the same adjacency.
+     */
+    private static final class Side {
+        /** The tentative distance of each node from this side's root, or -1. */
+        private final int[] distance;
+        private final int[] predecessor;
+        private final boolean[] settled;
+        private final IntMinHeap heap;
+        /** 1 for the forward side, -1 for the reverse side: the sign of the potential. */
+        private final int sign;
+        private int settledCount;
+
+        /**
+         * Constructor: an empty side for a graph of n nodes, with potentials of the given sign.
+         */
+        private Side(int n, int sign) {
+            distance = new int[n];
+            predecessor = new int[n];
+            settled = new boolean[n];
+            Arrays.fill(distance, -1);
+            heap = new IntMinHeap(n);
+            this.sign = sign;
+        }
+
+        /**
+         * Give v the tentative distance d with predecessor pred, and record the path
+         * through v if it is the best so far.
+         */
+        private void label(BidirectionalSearch s, int v, int d, int pred) {
+            distance[v] = d;
+            predecessor[v] = pred;
+            long key = 2L * d + sign * s.potential(v);
+            if (heap.contains(v)) {
+                heap.decreaseKey(v, key);
+            } else {
+                heap.add(v, key);
+            }
+            Side other = this == s.forward ? s.reverse : s.forward;
+            if (other.distance[v] >= 0 && d + other.distance[v] < s.best) {
+                s.best = d + other.distance[v];
+                s.meeting = v;
+            }
+        }
+
+        /**
+         * Settle the node with the smallest key and label its neighbours.
+         */
+        private void expand(BidirectionalSearch s) {
+            CompactGraph g = s.g;
+            int v = heap.poll();
+            settled[v] = true;
+            settledCount++;
+            for (int i = g.neighbourStart(v); i < g.neighbourEnd(v); i++) {
+                int w = g.neighbour(i);
+                int d = distance[v] + g.weight(i);
+                if (!settled[w] && (distance[w] < 0 || d < distance[w])) {
+                    label(s, w, d, v);
+                }
+            }
+        }
+    }
+}
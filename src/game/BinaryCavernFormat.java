@@ -0,0 +1,230 @@
+package game;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * The binary file format for caverns, which is far smaller and faster to load than
+ * the text format of Cavern.serialize().
+ * <p>
+ * A file consists of, in order:
+ * <ul>
+ * <li>the magic number "CAVB" and a version byte,
+ * <li>the number of rows, the number of columns and the cell of the target as varints
+ * (a cell (r, c) is numbered r * cols + c),
+ * <li>the tile type of every cell in row-major order, packed 2 bits per cell and 4 cells per byte,
+ * <li>for every open cell in row-major order, its gold as a varint followed by one byte holding
+ * the length of its edge to the south (high 4 bits) and to the east (low 4 bits), 0 if there is none,
+ * <li>the CRC32 of everything before it, as a 4-byte big-endian int.
+ * </ul>
+ * Varints are unsigned LEB128: 7 bits per byte, least significant first, high bit set on all but
+ * the last byte. Since each edge is written once with 4 bits, edge lengths must be at most 15.
+ */
+/* package */ final class BinaryCavernFormat {
+    /* package */ static final int MAGIC = 0x43415642;
+    private static final int VERSION = 1;
+    private static final int MAX_LENGTH = 15;
+    private static final Tile.Type[] TYPES = Tile.Type.values();
+
+    private BinaryCavernFormat() {
+    }
+
+    /**
+     * Return true iff buf, from its position, starts with the magic number of this format.
+     * The position of buf is not changed.
+     */
+    /* package */ static boolean isBinary(ByteBuffer buf) {
+        return buf.remaining() >= 4 && buf.getInt(buf.position()) == MAGIC;
+    }
+
+    /**
+     * Return the binary encoding of cavern.
+     * Throw an IllegalArgumentException if an edge of cavern is longer than 15.
+     */
+    /* package */ static byte[] encode(Cavern cavern) {
+        int rows = cavern.getRowCount();
+        int cols = cavern.getColumnCount();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(rows * cols);
+        out.write(MAGIC >>> 24);
+        out.write(MAGIC >>> 16);
+        out.write(MAGIC >>> 8);
+        out.write(MAGIC);
+        out.write(VERSION);
+        Tile target = cavern.getTarget().getTile();
+        writeVarint(out, rows);
+        writeVarint(out, cols);
+        writeVarint(out, target.getRow() * cols + target.getColumn());
+
+        int packed = 0;
+        for (int k = 0; k < rows * cols; k++) {
+            packed |= cavern.getTileAt(k / cols, k % cols).getType().ordinal() << (2 * (k % 4));
+            if (k % 4 == 3) {
+                out.write(packed);
+                packed = 0;
+            }
+        }
+        if ((rows * cols) % 4 != 0) {
+            out.write(packed);
+        }
+
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                Node n = cavern.getNodeAt(r, c);
+                if (!n.getTile().getType().isOpen()) {
+                    continue;
+                }
+                writeVarint(out, n.getTile().getGold());
+                int south = n.getExitLength(Cavern.Direction.SOUTH.ordinal());
+                int east = n.getExitLength(Cavern.Direction.EAST.ordinal());
+                if (south > MAX_LENGTH || east > MAX_LENGTH) {
+                    throw new IllegalArgumentException("encode: Edge lengths must be at most " + MAX_LENGTH);
+                }
+                out.write(south << 4 | east);
+            }
+        }
+
+        CRC32 crc = new CRC32();
+        byte[] body = out.toByteArray();
+        crc.update(body, 0, body.length);
+        int checksum = (int) crc.getValue();
+        out.write(checksum >>> 24);
+        out.write(checksum >>> 16);
+        out.write(checksum >>> 8);
+        out.write(checksum);
+        return out.toByteArray();
+    }
+
+    /**
+     * Decode the cavern in buf, from its position to its limit, and return it.
+     * The tiles are decoded straight into the cavern's grid and the edges into its edge store.
+     * Throw an IllegalArgumentException if buf does not hold a valid cavern of this format.
+     */
+    /* package */ static Cavern decode(ByteBuffer buf) {
+        ByteBuffer in = buf.slice();
+        if (in.remaining() < 9 || in.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("decode: Not a binary cavern");
+        }
+        int end = in.limit() - 4;
+        int checksum = in.getInt(end);
+        if (checksum != crc(in.duplicate(), end)) {
+            throw new IllegalArgumentException("decode: Checksum mismatch");
+        }
+        in.limit(end);
+        in.position(4);
+        int version = in.get();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("decode: Unsupported version " + version);
+        }
+
+        try {
+            int rows = readVarint(in);
+            int cols = readVarint(in);
+            int targetCell = readVarint(in);
+            if (rows < 1 || cols < 1 || (long) rows * cols > Integer.MAX_VALUE
+                    || targetCell < 0 || targetCell >= rows * cols) {
+                throw new IllegalArgumentException("decode: Bad dimensions");
+            }
+
+            byte[] types = new byte[rows * cols];
+            int packed = 0;
+            for (int k = 0; k < types.length; k++) {
+                if (k % 4 == 0) {
+                    packed = in.get();
+                }
+                types[k] = (byte) ((packed >>> (2 * (k % 4))) & 3);
+            }
+
+            Tile[][] grid = new Tile[rows][cols];
+            byte[] lengths = new byte[rows * cols];
+            for (int k = 0; k < types.length; k++) {
+                Tile.Type type = TYPES[types[k]];
+                if (type.isOpen()) {
+                    grid[k / cols][k % cols] = new Tile(k / cols, k % cols, readVarint(in), type);
+                    lengths[k] = in.get();
+                }
+            }
+            if (in.hasRemaining()) {
+                throw new IllegalArgumentException("decode: Trailing data");
+            }
+
+            if (grid[targetCell / cols][targetCell % cols] == null) {
+                throw new IllegalArgumentException("decode: Target is a wall");
+            }
+
+            EdgeStore edges = new EdgeStore(rows, cols);
+            Node[][] tiles = Cavern.createNodes(grid, edges);
+            for (int k = 0; k < lengths.length; k++) {
+                int south = (lengths[k] >>> 4) & 0xf;
+                int east = lengths[k] & 0xf;
+                if (south > 0) {
+                    connect(edges, tiles, k / cols, k % cols, k / cols + 1, k % cols, south);
+                }
+                if (east > 0) {
+                    connect(edges, tiles, k / cols, k % cols, k / cols, k % cols + 1, east);
+                }
+            }
+            return Cavern.fromNodes(tiles, tiles[targetCell / cols][targetCell % cols]);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("decode: Truncated cavern", e);
+        }
+    }
+
+    /**
+     * Connect the open tiles (r, c) and (r2, c2) of tiles with an edge of length len.
+     * Throw an IllegalArgumentException if (r2, c2) is not an open tile.
+     */
+    private static void connect(EdgeStore edges, Node[][] tiles, int r, int c, int r2, int c2, int len) {
+        if (r2 >= tiles.length || c2 >= tiles[0].length || !tiles[r2][c2].getTile().getType().isOpen()) {
+            throw new IllegalArgumentException("decode: Edge leads to a wall");
+        }
+        edges.connect(tiles[r][c], tiles[r2][c2], len);
+    }
+
+    /**
+     * Return the CRC32 of the first len bytes of buf, as an int.
+     */
+    /* package */ static int crc(ByteBuffer buf, int len) {
+        CRC32 crc = new CRC32();
+        byte[] chunk = new byte[8192];
+        buf.position(0);
+        while (len > 0) {
+            int n = Math.min(len, chunk.length);
+            buf.get(chunk, 0, n);
+            crc.update(chunk, 0, n);
+            len -= n;
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Write the non-negative value v to out as a varint.
+     */
+    /* package */ static void writeVarint(ByteArrayOutputStream out, int v) {
+        while ((v & ~0x7f) != 0) {
+            out.write((v & 0x7f) | 0x80);
+            v >>>= 7;
+        }
+        out.write(v);
+    }
+
+    /**
+     * Read a varint from in and return it.
+     * Throw an IllegalArgumentException if it does not fit in a non-negative int.
+     */
+    /* package */ static int readVarint(ByteBuffer in) {
+        int v = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.get();
+            v |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                if (v < 0) {
+                    break;
+                }
+                return v;
+            }
+        }
+        throw new IllegalArgumentException("decode: Bad varint");
+    }
+}
@@ -1,19 +1,21 @@
 package game;
 
-import java.util.ArrayDeque;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Objects;
-import java.util.Queue;
 import java.util.Random;
 import java.util.Set;
-import java.util.function.Supplier;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.function.IntSupplier;
 
 /**
  * An instance represents a Cavern that the explorer can navigate through.
@@ -27,12 +29,19 @@ public class Cavern {
     public static final int TASTY_VALUE = 5000;
     private static final double DENSITY = 0.6;
     private static final double GOLD_PROBABILITY = 0.33;
+    private static final Direction[] DIRECTIONS = Direction.values();
+    /** The directions of the edges that serialize() writes for each node. */
+    private static final Direction[] SERIALIZED_DIRECTIONS = {Direction.EAST, Direction.SOUTH};
     private final int rows;
     private final int cols;
     private final Set<Node> graph;
     private final Node entrance;
     private final Node target;
     private final Node[][] tiles;
+    private volatile CompactGraph compactGraph;
+    private volatile NeighbourTable neighbourTable;
+    private volatile DistanceField distanceField;
+    private int generationAttempts = 1;
 
     /**
      * Constructor: an instance of size (rws, cls) .
@@ -43,33 +52,31 @@ public class Cavern {
     private Cavern(int rws,
                    int cls,
                    Random rand,
-                   Supplier<Integer> edgeWeightGenerator,
-                   Supplier<Integer> goldGenerator,
+                   IntSupplier edgeWeightGenerator,
+                   IntSupplier goldGenerator,
                    Tile.Type targetType) {
-        rows = rws;
-        cols = cls;
+        this(generateGraph(rws, cls, rand, targetType, goldGenerator, -1, -1), edgeWeightGenerator, targetType);
+    }
+
+    /**
+     * Constructor: an instance whose open tiles are those in grid (null wherever there is a wall).
+     * Use {@code edgeWeightGenerator} to generate edge weights.
+     * Precondition: {@code grid} contains exactly one tile of type {@code targetType}.
+     */
+    private Cavern(Tile[][] grid, IntSupplier edgeWeightGenerator, Tile.Type targetType) {
+        rows = grid.length;
+        cols = grid[0].length;
 
-        graph = generateGraph(rand, targetType, goldGenerator);
+        // Set tiles for the floor and then add walls wherever floor is missing.
+        EdgeStore edges = new EdgeStore(rows, cols);
+        tiles = createNodes(grid, edges);
+        graph = collectGraph(tiles);
 
         entrance = graph.stream().filter((n) -> n.getTile().getType() == Tile.Type.ENTRANCE).findAny().get();
 
         target = graph.stream().filter((n) -> n.getTile().getType() == targetType).findAny().get();
 
-        // Set tiles for the floor and then add walls wherever floor is missing.
-        tiles = new Node[rows][cols];
-        for (Node node : graph) {
-            Tile t = node.getTile();
-            tiles[t.getRow()][t.getColumn()] = node;
-        }
-
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                if (tiles[i][j] == null) {
-                    tiles[i][j] = new Node(new Tile(i, j, 0, Tile.Type.WALL));
-                }
-            }
-        }
-        createEdges(tiles, edgeWeightGenerator);
+        createEdges(tiles, edges, edgeWeightGenerator);
     }
 
     /**
@@ -98,12 +105,34 @@ public class Cavern {
      * Use rand as a source of randomness for the cavern generation.
      */
     public static Cavern digExploreCavern(int rows, int cols, Random rand) {
-        int minOrbDist = minOrbDistance(rows, cols);
+        return digExploreCavern(rows, cols, rand, GenerationMode.REJECTION);
+    }
 
-        Cavern cavern = new Cavern(rows, cols, rand, () -> 1, () -> 0, Tile.Type.ORB);
-        while (cavern.minPathLengthToTarget(cavern.getEntrance()) < minOrbDist) {
+    /**
+     * Return a new random Cavern of size (rows, cols) with no gold, generated using mode.
+     * All edges have weight 1, and an orb is a reasonable distance from the exit.
+     * Use rand as a source of randomness for the cavern generation.
+     */
+    public static Cavern digExploreCavern(int rows, int cols, Random rand, GenerationMode mode) {
+        int minOrbDist = minOrbDistance(rows, cols);
+        int attempts = 1;
+
+        Cavern cavern;
+        if (mode == GenerationMode.CONSTRUCTIVE) {
+            Tile[][] grid = generateGraph(rows, cols, rand, Tile.Type.ORB, () -> 0, -1, minOrbDist);
+            while (grid == null) {
+                attempts++;
+                grid = generateGraph(rows, cols, rand, Tile.Type.ORB, () -> 0, -1, minOrbDist);
+            }
+            cavern = new Cavern(grid, () -> 1, Tile.Type.ORB);
+        } else {
             cavern = new Cavern(rows, cols, rand, () -> 1, () -> 0, Tile.Type.ORB);
+            while (cavern.minPathLengthToTarget(cavern.getEntrance()) < minOrbDist) {
+                attempts++;
+                cavern = new Cavern(rows, cols, rand, () -> 1, () -> 0, Tile.Type.ORB);
+            }
         }
+        cavern.generationAttempts = attempts;
         return cavern;
     }
 
@@ -120,12 +149,38 @@ public class Cavern {
      * Use rand as a source of randomness for the cavern generation.
      */
     public static Cavern digEscapeCavern(int rows, int cols, int currentRow, int currentCol, Random rand) {
-        Supplier<Integer> edgeWeightGen = () -> rand.nextInt(MAX_EDGE_WEIGHT) + 1;
-        Supplier<Integer> goldGen = () -> Cavern.generateGoldValue(rand);
-        Cavern potentialCavern = new Cavern(rows, cols, rand, edgeWeightGen, goldGen, Tile.Type.ENTRANCE);
-        while (potentialCavern.getTileAt(currentRow, currentCol).getType() != Tile.Type.FLOOR) {
+        return digEscapeCavern(rows, cols, currentRow, currentCol, rand, GenerationMode.REJECTION);
+    }
+
+    /**
+     * Return a new random Cavern of size (rows, cols) with random gold and edge weights,
+     * generated using mode.
+     * It is guaranteed that (currentRow, currentCol}) will be an open floor cell.
+     * Use rand as a source of randomness for the cavern generation.
+     */
+    public static Cavern digEscapeCavern(int rows, int cols, int currentRow, int currentCol,
+                                         Random rand, GenerationMode mode) {
+        IntSupplier edgeWeightGen = () -> rand.nextInt(MAX_EDGE_WEIGHT) + 1;
+        IntSupplier goldGen = () -> Cavern.generateGoldValue(rand);
+        int attempts = 1;
+
+        Cavern potentialCavern;
+        if (mode == GenerationMode.CONSTRUCTIVE) {
+            int required = currentRow * cols + currentCol;
+            Tile[][] grid = generateGraph(rows, cols, rand, Tile.Type.ENTRANCE, goldGen, required, -1);
+            while (grid == null) {
+                attempts++;
+                grid = generateGraph(rows, cols, rand, Tile.Type.ENTRANCE, goldGen, required, -1);
+            }
+            potentialCavern = new Cavern(grid, edgeWeightGen, Tile.Type.ENTRANCE);
+        } else {
             potentialCavern = new Cavern(rows, cols, rand, edgeWeightGen, goldGen, Tile.Type.ENTRANCE);
+            while (potentialCavern.getTileAt(currentRow, currentCol).getType() != Tile.Type.FLOOR) {
+                attempts++;
+                potentialCavern = new Cavern(rows, cols, rand, edgeWeightGen, goldGen, Tile.Type.ENTRANCE);
+            }
         }
+        potentialCavern.generationAttempts = attempts;
         return potentialCavern;
     }
 
@@ -147,69 +202,126 @@ public class Cavern {
     /**
      * Convert nodeStrList into a Cavern and return it.
      * Precondition: The list of strings is of the format output by {@code serialize()}.
+     * Files that list every edge in both directions, as older versions wrote them, are also accepted.
      */
     public static Cavern deserialize(List<String> nodeStrList) {
-        String extraInfo = nodeStrList.get(0);
-        String[] infoParts = extraInfo.split(",");
-        String[] dimensions = infoParts[0].split(":");
-        int rows = Integer.parseInt(dimensions[0]);
-        int cols = Integer.parseInt(dimensions[1]);
-        long targetId = Long.parseLong(infoParts[1].split(":")[1]);
-
-        Map<Long, Node> idToNode = new HashMap<>();
-        for (String nodeStr : nodeStrList) {
-            if (!nodeStr.equals(extraInfo)) {
-
-                String nodeInfo = nodeStr.substring(0, nodeStr.indexOf("="));
-                String[] splitInfo = nodeInfo.split(",");
-
-                long nodeId = Long.parseLong(splitInfo[0]);
-                Node n = new Node(nodeId,
-                        new Tile(Integer.parseInt(splitInfo[1]),
-                                Integer.parseInt(splitInfo[2]),
-                                Integer.parseInt(splitInfo[3]),
-                                Tile.Type.valueOf(splitInfo[4])));
-                idToNode.put(nodeId, n);
-            }
-        }
+        byte[] text = String.join("\n", nodeStrList).getBytes(StandardCharsets.US_ASCII);
+        return TextCavernParser.parse(ByteBuffer.wrap(text), false);
+    }
 
-        Node[][] tiles = new Node[rows][cols];
-        for (String nodeStr : nodeStrList) {
-            // The first line is not a node, it's metadata, so skip it.
-            if (nodeStr.equals(extraInfo)) {
-                continue;
-            }
+    /**
+     * Return the binary encoding of this cavern, which is far smaller and faster to load
+     * than serialize(). It can be converted back into a {@code Cavern} using
+     * {@code deserializeBinary()} or {@code load()}.
+     * Throw an IllegalArgumentException if an edge of this cavern is longer than 15.
+     */
+    public byte[] serializeBinary() {
+        return BinaryCavernFormat.encode(this);
+    }
 
-            String[] nodeAndEdgeInfo = nodeStr.split("=");
-            long nodeId = Long.parseLong(nodeAndEdgeInfo[0].split(",")[0]);
+    /**
+     * Return a checksum of this cavern: the CRC32 of its tiles, gold and edges as encoded by
+     * {@code serializeBinary()}. Picking up gold changes it.
+     */
+    public int checksum() {
+        byte[] b = serializeBinary();
+        return ByteBuffer.wrap(b).getInt(b.length - 4);
+    }
 
-            Node n = idToNode.get(nodeId);
-            tiles[n.getTile().getRow()][n.getTile().getColumn()] = n;
-            for (String edgeStr : nodeAndEdgeInfo[1].split(",")) {
-                String[] idAndWeight = edgeStr.split("-");
-                long otherId = Long.parseLong(idAndWeight[0]);
-                int weight = Integer.parseInt(idAndWeight[1]);
-                n.addEdge(new Edge(n, idToNode.get(otherId), weight));
+    /**
+     * Convert the binary encoding in buf, from its position to its limit, into a Cavern and return it.
+     * Throw an IllegalArgumentException if buf does not hold a cavern encoded by {@code serializeBinary()}
+     * or its checksum does not match.
+     */
+    public static Cavern deserializeBinary(ByteBuffer buf) {
+        return BinaryCavernFormat.decode(buf);
+    }
+
+    /**
+     * Load the cavern in the file at path and return it. The file may hold either the binary
+     * encoding of {@code serializeBinary()} or the text of {@code serialize()}; the format is
+     * detected from the start of the file. Either way the file is memory-mapped and parsed
+     * directly from the mapping, and large text files are parsed on several threads.
+     */
+    public static Cavern load(Path path) throws IOException {
+        return load(path, true);
+    }
+
+    /**
+     * Load the cavern in the file at path and return it, as load(Path) does.
+     * Large text files are parsed on several threads only if parallel is true; pass false
+     * when many files are being loaded concurrently anyway.
+     */
+    public static Cavern load(Path path, boolean parallel) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (BinaryCavernFormat.isBinary(buf)) {
+                return deserializeBinary(buf);
             }
+            return TextCavernParser.parse(buf, parallel);
         }
+    }
 
+    /**
+     * Return a cavern for the grid of nodes tiles with target trgt.
+     * Precondition: the edges of the nodes in tiles are complete.
+     */
+    /* package */ static Cavern fromNodes(Node[][] tiles, Node trgt) {
+        return new Cavern(collectGraph(tiles), tiles, trgt);
+    }
+
+    /**
+     * Return a grid of nodes for the tiles in grid, adding walls wherever grid has no tile.
+     * Open tiles get the dense ids 0..n-1 in row-major order and walls get the ids after that,
+     * so ids are allocated per cavern and can be used to index arrays.
+     * The nodes keep their edges in edges.
+     */
+    /* package */ static Node[][] createNodes(Tile[][] grid, EdgeStore edges) {
+        int rows = grid.length;
+        int cols = grid[0].length;
+        Node[][] nodes = new Node[rows][cols];
+        long nextId = 0;
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                if (grid[i][j] != null) {
+                    nodes[i][j] = new Node(nextId++, grid[i][j], edges);
+                    edges.add(nodes[i][j]);
+                }
+            }
+        }
         for (int i = 0; i < rows; i++) {
             for (int j = 0; j < cols; j++) {
-                if (tiles[i][j] == null) {
-                    tiles[i][j] = new Node(new Tile(i, j, 0, Tile.Type.WALL));
+                if (grid[i][j] == null) {
+                    nodes[i][j] = new Node(nextId++, new Tile(i, j, 0, Tile.Type.WALL), edges);
+                    edges.add(nodes[i][j]);
+                }
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * Return an unmodifiable set of the open nodes in tiles.
+     */
+    private static Set<Node> collectGraph(Node[][] tiles) {
+        Set<Node> nodes = new HashSet<>();
+        for (Node[] row : tiles) {
+            for (Node n : row) {
+                if (n.getTile().getType().isOpen()) {
+                    nodes.add(n);
                 }
             }
         }
-        return new Cavern(new HashSet<>(idToNode.values()), tiles, idToNode.get(targetId));
+        return Collections.unmodifiableSet(nodes);
     }
 
     /**
      * Add edges to the grid of nodes, tiles, between adjacent non-wall tiles,
-     * using edgeWeightGenerator to get edge weights.
+     * using edgeWeightGenerator to get edge weights. The edges are kept in edges.
      * Precondition: all elements of {@code tiles} are non-null and
      * the grid of nodes has no edges.
      */
-    private void createEdges(Node[][] tiles, Supplier<Integer> edgeWeightGenerator) {
+    private static void createEdges(Node[][] tiles, EdgeStore edges, IntSupplier edgeWeightGenerator) {
         for (int i = 0; i < tiles.length - 1; i++) {
             for (int j = 0; j < tiles[i].length - 1; j++) {
                 Node node = tiles[i][j];
@@ -217,115 +329,201 @@ public class Cavern {
                     continue;
                 }
 
-                final Point p = new Point(i, j);
-                Stream.of(Direction.SOUTH, Direction.EAST)
-                        .map(Direction::getPoint)
-                        .map(p::add)
-                        .map((q) -> tiles[q.row][q.col])
-                        .filter((m) -> m.getTile().getType() != Tile.Type.WALL)
-                        .forEach((m) -> {
-                            int weight = edgeWeightGenerator.get();
-                            node.addEdge(new Edge(node, m, weight));
-                            m.addEdge(new Edge(m, node, weight));
-                        });
+                // The south edge is weighted before the east one, which fixes the order of random draws.
+                addEdge(edges, node, tiles[i + 1][j], edgeWeightGenerator);
+                addEdge(edges, node, tiles[i][j + 1], edgeWeightGenerator);
             }
         }
     }
 
     /**
-     * Return true iff p is on the grid
+     * Connect node and m with an edge whose weight is drawn from edgeWeightGenerator,
+     * unless m is a wall. The edge is stored once in edges and serves both directions.
+     */
+    private static void addEdge(EdgeStore edges, Node node, Node m, IntSupplier edgeWeightGenerator) {
+        if (m.getTile().getType() == Tile.Type.WALL) {
+            return;
+        }
+        edges.connect(node, m, edgeWeightGenerator.getAsInt());
+    }
+
+    /**
+     * Return true iff (row, col) is on a grid of size (rows, cols), away from its outer edge.
      */
-    private boolean isValid(Point p) {
-        return p.row > 0 && p.row < rows - 1 &&
-                p.col > 0 && p.col < cols - 1;
+    private static boolean isValid(int rows, int cols, int row, int col) {
+        return row > 0 && row < rows - 1 &&
+                col > 0 && col < cols - 1;
     }
 
     /**
-     * Generate a new random graph that fits within the grid and return the set of nodes.
+     * Generate a new random graph that fits within a grid of size (rows, cols) and return
+     * its open tiles as a grid with null wherever there is a wall.
      * Use goldGenerator to generate gold.
      * If targetType is not ENTRANCE, make the target be some random node that is
-     * not the entrance.
+     * not the entrance. If minTargetDistance is non-negative, the target is chosen
+     * only among the nodes at least that many steps from the entrance.
+     * If requiredCell is non-negative, that cell is always opened if it is reached.
+     * Return null if the required cell was not reached or no node is far enough
+     * away to be the target.
+     * <p>
+     * Cells are packed as row * cols + col, the seen and open cells are kept in bitsets,
+     * and the frontier is an int queue, so no objects are allocated per probe. The frontier
+     * queue also records the order in which cells were opened, which is the order in which
+     * the target is chosen. Random numbers are drawn in a fixed order so that a seed always
+     * generates the same cavern.
      */
-    private Set<Node> generateGraph(Random rand,
-                                    Tile.Type targetType,
-                                    Supplier<Integer> goldGenerator) {
-        List<Node> nodes = new ArrayList<>();
-
-        Set<Point> pointsSeen = new HashSet<>();
-        Set<Point> openPoints = new HashSet<>();
-        Queue<Node> frontier = new ArrayDeque<>();
-
-        Point entrancePoint = getEntrancePoint(rand);
-        Node entrance = new Node(new Tile(entrancePoint.row, entrancePoint.col, 0, Tile.Type.ENTRANCE));
-        nodes.add(entrance);
-
-        pointsSeen.add(entrancePoint);
-        openPoints.add(entrancePoint);
-        frontier.add(entrance);
-        while (!frontier.isEmpty()) {
-            Node node = frontier.remove();
-            Point p = new Point(node.getTile().getRow(), node.getTile().getColumn());
+    private static Tile[][] generateGraph(int rows,
+                                          int cols,
+                                          Random rand,
+                                          Tile.Type targetType,
+                                          IntSupplier goldGenerator,
+                                          int requiredCell,
+                                          int minTargetDistance) {
+        BitSet pointsSeen = new BitSet(rows * cols);
+        BitSet openPoints = new BitSet(rows * cols);
+        int[] gold = new int[rows * cols];
+        // Every cell is queued at most once, so the queue never wraps.
+        int[] frontier = new int[rows * cols];
+        int head = 0;
+        int tail = 0;
+        int[] newExits = new int[Direction.values().length];
+
+        int entrancePoint = getEntrancePoint(rows, cols, rand);
+        pointsSeen.set(entrancePoint);
+        openPoints.set(entrancePoint);
+        frontier[tail++] = entrancePoint;
+        while (head < tail) {
+            int p = frontier[head++];
+            int row = p / cols;
+            int col = p % cols;
 
             // We want to make sure there's a way out if we can get one.
             // This will prevent stupid degenerate graphs.
             int existingExits = 0;
-            List<Point> newExits = new ArrayList<>();
-            for (Direction dir : Direction.values()) {
-                Point newPt = dir.getPoint().add(p);
-                if (isValid(newPt)) {
-                    if (openPoints.contains(newPt)) {
+            int nExits = 0;
+            for (Direction dir : DIRECTIONS) {
+                int newRow = row + dir.getRowOffset();
+                int newCol = col + dir.getColumnOffset();
+                if (isValid(rows, cols, newRow, newCol)) {
+                    int newPt = newRow * cols + newCol;
+                    if (openPoints.get(newPt)) {
                         existingExits++;
-                    } else if (pointsSeen.add(newPt)) {
-                        newExits.add(newPt);
+                    } else if (!pointsSeen.get(newPt)) {
+                        pointsSeen.set(newPt);
+                        newExits[nExits++] = newPt;
                     }
                 }
             }
 
-            int nExits = newExits.size();
             if (nExits > 0) {
                 double modifiedDensity;
-                Point forcedExit;
+                int forcedExit;
                 // Modify the density function so that the expected number of open exits
                 // is the same even though we're forcing something to be open.
                 if (existingExits < 2) {
                     modifiedDensity = (nExits == 1 ? 0.0 : (nExits * DENSITY - 1) / (nExits - 1));
-                    forcedExit = newExits.get(rand.nextInt(newExits.size()));
+                    forcedExit = newExits[rand.nextInt(nExits)];
                 } else {
                     modifiedDensity = DENSITY;
-                    forcedExit = null;
+                    forcedExit = -1;
+                }
+                for (int k = 0; k < nExits; k++) {
+                    int q = newExits[k];
+                    if (q == forcedExit || q == requiredCell || rand.nextDouble() < modifiedDensity) {
+                        openPoints.set(q);
+                        gold[q] = goldGenerator.getAsInt();
+                        frontier[tail++] = q;
+                    }
                 }
-                newExits.stream()
-                        .filter((q) -> q.equals(forcedExit) || rand.nextDouble() < modifiedDensity)
-                        .peek(openPoints::add)
-                        .map((q) -> new Node(new Tile(q.row, q.col, goldGenerator.get(), Tile.Type.FLOOR)))
-                        .peek(frontier::add)
-                        .forEach(nodes::add);
             }
         }
 
-        if (targetType != Tile.Type.ENTRANCE) {
+        if (requiredCell >= 0 && !openPoints.get(requiredCell)) {
+            return null;
+        }
+
+        int targetIdx = -1;
+        if (targetType != Tile.Type.ENTRANCE && minTargetDistance >= 0) {
+            targetIdx = chooseDistantTarget(rows, cols, rand, frontier, tail, openPoints, minTargetDistance);
+            if (targetIdx < 0) {
+                return null;
+            }
+        } else if (targetType != Tile.Type.ENTRANCE) {
             // Grab a random tile that's not the entrance and make it the target.
-            int targetIdx = rand.nextInt(nodes.size() - 1) + 1;
-            nodes.get(targetIdx).getTile().setType(targetType);
+            targetIdx = rand.nextInt(tail - 1) + 1;
         }
 
-        return Collections.unmodifiableSet(new HashSet<>(nodes));
+        Tile[][] grid = new Tile[rows][cols];
+        for (int k = 0; k < tail; k++) {
+            int p = frontier[k];
+            Tile.Type type = (k == 0 ? Tile.Type.ENTRANCE : (k == targetIdx ? targetType : Tile.Type.FLOOR));
+            grid[p / cols][p % cols] = new Tile(p / cols, p % cols, gold[p], type);
+        }
+        return grid;
     }
 
     /**
-     * Randomly determine and return the entrance to the cavern
-     * (the only non-wall tile along an edge of the grid).
+     * Return the position in order[0..count-1] of a random open cell that is at least
+     * minDistance steps from the entrance, order[0], or -1 if there is no such cell.
+     * Open cells are given by open, and every step between adjacent open cells has length 1.
      */
-    private Point getEntrancePoint(Random rand) {
+    private static int chooseDistantTarget(int rows, int cols, Random rand,
+                                           int[] order, int count, BitSet open, int minDistance) {
+        int[] distance = new int[rows * cols];
+        Arrays.fill(distance, -1);
+        int[] queue = new int[count];
+        int head = 0;
+        int tail = 0;
+        distance[order[0]] = 0;
+        queue[tail++] = order[0];
+        while (head < tail) {
+            int p = queue[head++];
+            for (Direction dir : DIRECTIONS) {
+                int row = p / cols + dir.getRowOffset();
+                int col = p % cols + dir.getColumnOffset();
+                if (row < 0 || row >= rows || col < 0 || col >= cols) {
+                    continue;
+                }
+                int q = row * cols + col;
+                if (open.get(q) && distance[q] < 0) {
+                    distance[q] = distance[p] + 1;
+                    queue[tail++] = q;
+                }
+            }
+        }
+
+        int candidates = 0;
+        for (int k = 1; k < count; k++) {
+            if (distance[order[k]] >= minDistance) {
+                candidates++;
+            }
+        }
+        if (candidates == 0) {
+            return -1;
+        }
+        int chosen = rand.nextInt(candidates);
+        for (int k = 1; k < count; k++) {
+            if (distance[order[k]] >= minDistance && chosen-- == 0) {
+                return k;
+            }
+        }
+        throw new IllegalStateException("The above loop should always choose a target.");
+    }
+
+    /**
+     * Randomly determine and return the entrance to a cavern of size (rows, cols)
+     * (the only non-wall tile along an edge of the grid), packed as row * cols + col.
+     */
+    private static int getEntrancePoint(int rows, int cols, Random rand) {
         switch (rand.nextInt(4)) {
             case 0: // North wall
-                return new Point(rand.nextInt(rows - 2) + 1, 0);
+                return (rand.nextInt(rows - 2) + 1) * cols;
             case 1: // South wall
-                return new Point(rand.nextInt(rows - 2) + 1, cols - 1);
+                return (rand.nextInt(rows - 2) + 1) * cols + cols - 1;
             case 2: // West wall
-                return new Point(0, rand.nextInt(cols - 2) + 1);
+                return rand.nextInt(cols - 2) + 1;
             case 3: // East wall
-                return new Point(rows - 1, rand.nextInt(cols - 2) + 1);
+                return (rows - 1) * cols + rand.nextInt(cols - 2) + 1;
             default:
                 throw new IllegalStateException("Unexpected random value!");
         }
@@ -338,6 +536,14 @@ public class Cavern {
         return graph.size();
     }
 
+    /**
+     * Return the number of caverns that were generated to produce this one
+     * (1 plus the number of retries), or 1 if this cavern was not generated.
+     */
+    public int getGenerationAttempts() {
+        return generationAttempts;
+    }
+
     /**
      * Return the number of rows in the grid.
      */
@@ -391,48 +597,162 @@ public class Cavern {
     }
 
     /**
-     * Package-private implementation of Dijkstra's algorithm that returns
-     * only the minimum distance between the given node and the target node for
-     * this cavern (no path).
+     * Return a frozen, array-backed snapshot of the graph of this cavern.
+     * The snapshot is built on first use and shared by all later callers.
+     */
+    public CompactGraph getCompactGraph() {
+        CompactGraph g = compactGraph;
+        if (g == null) {
+            synchronized (this) {
+                g = compactGraph;
+                if (g == null) {
+                    g = new CompactGraph(this);
+                    compactGraph = g;
+                }
+            }
+        }
+        return g;
+    }
+
+    /**
+     * Return the neighbours of every node with their distances to the target, for exploration.
+     * The table is built on first use and shared by all later callers.
+     */
+    /* package */ NeighbourTable getNeighbourTable() {
+        NeighbourTable t = neighbourTable;
+        if (t == null) {
+            synchronized (this) {
+                t = neighbourTable;
+                if (t == null) {
+                    t = new NeighbourTable(this);
+                    neighbourTable = t;
+                }
+            }
+        }
+        return t;
+    }
+
+    /**
+     * Return a shortest route from one node of this cavern to another: its length and its nodes
+     * from {@code from} to {@code to}. If there is no path, the route has length -1 and no nodes.
+     * This is a bidirectional A* search (see BidirectionalSearch), which on a large cavern
+     * settles only a fraction of its nodes, so it suits single queries between two nodes.
+     * Precondition: {@code from} and {@code to} must be nodes in this cavern.
+     */
+    public Route shortestPath(Node from, Node to) {
+        CompactGraph g = getCompactGraph();
+        int s = g.indexOf(from);
+        int t = g.indexOf(to);
+        if (s < 0 || t < 0) {
+            return new Route(-1, new ArrayList<>(), 0);
+        }
+        return BidirectionalSearch.route(g, s, t);
+    }
+
+    /**
+     * Return the length of the shortest path from start to the target of this cavern.
+     * This uses the distance field if it has already been computed, and a single
+     * point-to-point query (see shortestPath) otherwise.
+     * Throw an IllegalStateException if there is no such path.
      * Precondition: {@code start} must be a node in this cavern.
      */
-    int minPathLengthToTarget(Node start) {
+    /* package */ int minPathLengthToTarget(Node start) {
+        int d = distanceField != null ? distanceToTarget(start) : shortestPath(start, target).getLength();
+        if (d < 0) {
+            throw new IllegalStateException("minPathLengthToTarget: the target cannot be reached");
+        }
+        return d;
+    }
 
-        InternalMinHeap<Node> frontier = new InternalMinHeap<>();
+    /**
+     * Return the length of the shortest path from n to the target of this cavern,
+     * or -1 if n is a wall or cannot reach the target. This takes constant time once
+     * the distance field of this cavern has been computed (see distanceField()), which
+     * ShortestPaths does in time linear in the size of the cavern.
+     * Precondition: {@code n} must be a node in this cavern.
+     */
+    public int distanceToTarget(Node n) {
+        DistanceField f = distanceField();
+        int v = (int) n.getId();
+        return v < f.distance.length ? f.distance[v] : -1;
+    }
 
-        /** Contains an entry for each node in the Settled and Frontier sets. */
-        Map<Long, Integer> pathWeights = new HashMap<>();
+    /**
+     * Return the neighbour of n on a shortest path from n to the target of this cavern,
+     * or null if n is the target, a wall or cannot reach the target. This takes constant time
+     * once the distance field of this cavern has been computed.
+     * Precondition: {@code n} must be a node in this cavern.
+     */
+    public Node nextTowardsTarget(Node n) {
+        DistanceField f = distanceField();
+        int v = (int) n.getId();
+        return v < f.next.length && f.next[v] >= 0 ? f.graph.node(f.next[v]) : null;
+    }
 
-        pathWeights.put(start.getId(), 0);
-        frontier.add(start, 0);
-        /// invariant: as in lecture notes
-        while (!frontier.isEmpty()) {
-            Node f = frontier.poll();
-            if (f.equals(target)) {
-                return pathWeights.get(f.getId());
-            }
+    /**
+     * Return a shortest path from n to the target of this cavern, as the list of its nodes
+     * from n to the target, or an empty list if n is a wall or cannot reach the target.
+     * This takes time proportional to the number of nodes on the path once the distance
+     * field of this cavern has been computed.
+     * Precondition: {@code n} must be a node in this cavern.
+     */
+    public List<Node> pathToTarget(Node n) {
+        List<Node> path = new ArrayList<>();
+        if (distanceToTarget(n) < 0) {
+            return path;
+        }
+        for (Node m = n; m != null; m = nextTowardsTarget(m)) {
+            path.add(m);
+        }
+        return path;
+    }
 
-            int nWeight = pathWeights.get(f.getId());
-
-            for (Edge e : f.getExits()) {
-                Node w = e.getOther(f);
-                int weightThroughN = nWeight + e.length();
-                Integer existingWeight = pathWeights.get(w.getId());
-                if (existingWeight == null) {
-                    pathWeights.put(w.getId(), weightThroughN);
-                    frontier.add(w, weightThroughN);
-                } else if (weightThroughN < existingWeight) {
-                    pathWeights.put(w.getId(), weightThroughN);
-                    frontier.changePriority(w, weightThroughN);
+    /**
+     * Return the distances to the target of this cavern and the shortest-path tree towards it.
+     * They are computed on first use and shared by all later callers.
+     */
+    private DistanceField distanceField() {
+        DistanceField f = distanceField;
+        if (f == null) {
+            synchronized (this) {
+                f = distanceField;
+                if (f == null) {
+                    f = new DistanceField(this);
+                    distanceField = f;
                 }
             }
         }
-        throw new IllegalStateException("The above loop should always reach the desired location.");
+        return f;
+    }
+
+    /**
+     * An instance holds, for each open node of a cavern (indexed by id), the length of its
+     * shortest path to the target and the next node on that path. Edges are symmetric, so
+     * one search outwards from the target computes them for every node.
+     */
+    private static final class DistanceField {
+        private final CompactGraph graph;
+        /** The distance of each node to the target (-1 if the node cannot reach it). */
+        private final int[] distance;
+        /** The index of the next node on a shortest path to the target (-1 for the target itself). */
+        private final int[] next;
+
+        /**
+         * Constructor: the distance field of cavern.
+         */
+        private DistanceField(Cavern cavern) {
+            graph = cavern.getCompactGraph();
+            distance = new int[graph.size()];
+            next = new int[graph.size()];
+            ShortestPaths.distancesFrom(graph, (int) cavern.target.getId(), distance, next);
+        }
     }
 
     /**
      * Serialize this cavern as a list of strings that can be written to a file.
      * The list can be converted back into a {@code Cavern} using {@code deserialize()}.
+     * Each edge is written once, by the node north or west of it, so a node's edge
+     * list may be empty.
      */
     public List<String> serialize() {
         List<String> nodes = new ArrayList<>();
@@ -441,14 +761,35 @@ public class Cavern {
             Tile t = n.getTile();
             String nodeStr = n.getId() + "," + t.getRow() + "," + t.getColumn() + "," + t.getGold() + "," + t.getType().name();
 
-            String edges = n.getExits().stream()
-                    .map((e) -> e.getOther(n).getId() + "-" + e.length())
-                    .collect(Collectors.joining(","));
+            StringBuilder edges = new StringBuilder();
+            for (Direction d : SERIALIZED_DIRECTIONS) {
+                Node m = n.getNeighbour(d);
+                if (m != null) {
+                    if (edges.length() > 0) {
+                        edges.append(',');
+                    }
+                    edges.append(m.getId()).append('-').append(n.getExitLength(d.ordinal()));
+                }
+            }
             nodes.add(nodeStr + "=" + edges);
         }
         return nodes;
     }
 
+    /**
+     * An enum representing how constraints on a generated cavern are met.
+     * REJECTION regenerates the whole cavern until the constraints happen to hold,
+     * which reproduces the caverns of earlier versions for a given seed.
+     * CONSTRUCTIVE meets them while generating: the orb is placed on a reachable tile
+     * far enough from the entrance, and the tile that must be open is forced open
+     * during growth. It only retries in the rare case that growth never reaches
+     * that tile or no tile is far enough away, but draws random numbers in a
+     * different order, so it generates different caverns for a given seed.
+     */
+    public enum GenerationMode {
+        REJECTION, CONSTRUCTIVE
+    }
+
     /**
      * An enum reprsenting a grid direction.
      */
@@ -470,6 +811,20 @@ public class Cavern {
         public Point getPoint() {
             return dir;
         }
+
+        /**
+         * Return the change in row when moving one step in this direction.
+         */
+        public int getRowOffset() {
+            return dir.row;
+        }
+
+        /**
+         * Return the change in column when moving one step in this direction.
+         */
+        public int getColumnOffset() {
+            return dir.col;
+        }
     }
 
     /**
@@ -486,25 +841,5 @@ public class Cavern {
             row = r;
             col = c;
         }
-
-        /**
-         * Return a new point, which is p added to this point.
-         */
-        public Point add(Point p) {
-            return new Point(row + p.row, col + p.col);
-        }
-
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (!(o instanceof Point)) return false;
-            Point p = (Point) o;
-            return p.row == row && p.col == col;
-        }
-
-        @Override
-        public int hashCode() {
-            return Objects.hash(row, col);
-        }
     }
 }
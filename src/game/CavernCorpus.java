@@ -0,0 +1,301 @@
+package game;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * An instance is a corpus of many caverns stored in a single memory-mapped archive file,
+ * for regression runs over saved caverns.
+ * <p>
+ * Every cavern in the archive has a unique name and is stored in the binary format of
+ * Cavern.serializeBinary(). The archive ends with an index of the names and the offsets of
+ * their caverns, so any cavern can be read without reading the others. The caverns generated
+ * for a seed are stored under the names seedName(seed, true) and seedName(seed, false).
+ * <p>
+ * Caverns are decoded only when they are asked for, and every request decodes a new
+ * Cavern, since playing a game changes the gold in its cavern. An instance is thread-safe,
+ * so stream().parallel() decodes caverns on several threads.
+ * <p>
+ * The file consists of the magic number "CAVC" and a version byte, the encoded caverns,
+ * the index and finally the offset of the index as a long. The index is the number of
+ * entries followed, for each entry, by its name as UTF-8 preceded by its length in two
+ * bytes, its offset as a long and its length as an int.
+ */
+public final class CavernCorpus {
+    private static final int MAGIC = 0x43415643;
+    private static final int VERSION = 1;
+    /** The size of an index entry with an empty name. */
+    private static final int MIN_ENTRY_SIZE = 2 + 8 + 4;
+
+    private final MappedByteBuffer data;
+    private final List<String> names;
+    private final long[] offsets;
+    private final int[] lengths;
+    private final Map<String, Integer> byName;
+
+    /**
+     * Constructor: the corpus in data whose index has been read into names, offsets and lengths.
+     */
+    private CavernCorpus(MappedByteBuffer data, List<String> names, long[] offsets, int[] lengths) {
+        this.data = data;
+        this.names = Collections.unmodifiableList(names);
+        this.offsets = offsets;
+        this.lengths = lengths;
+        byName = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            byName.put(names.get(i), i);
+        }
+    }
+
+    /**
+     * Open the corpus archive at path and return it. Only its index is read; the caverns
+     * are decoded from the mapped file when they are asked for.
+     * Throw an IOException if the file cannot be read or is not a corpus archive.
+     */
+    public static CavernCorpus open(Path path) throws IOException {
+        MappedByteBuffer data;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("CavernCorpus: " + path + " is larger than 2 GB");
+            }
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (data.limit() < 13 || data.getInt(0) != MAGIC) {
+            throw new IOException("CavernCorpus: " + path + " is not a cavern corpus");
+        }
+        if (data.get(4) != VERSION) {
+            throw new IOException("CavernCorpus: " + path + " has unsupported version " + data.get(4));
+        }
+
+        long indexOffset = data.getLong(data.limit() - 8);
+        if (indexOffset < 5 || indexOffset > data.limit() - 12) {
+            throw new IOException("CavernCorpus: " + path + " has a bad index offset");
+        }
+        ByteBuffer index = data.duplicate();
+        index.position((int) indexOffset);
+        index.limit(data.limit() - 8);
+        int n = index.getInt();
+        if (n < 0 || n > index.remaining() / MIN_ENTRY_SIZE) {
+            throw new IOException("CavernCorpus: " + path + " has a bad index size " + n);
+        }
+        List<String> names = new ArrayList<>(n);
+        long[] offsets = new long[n];
+        int[] lengths = new int[n];
+        try {
+            for (int i = 0; i < n; i++) {
+                byte[] name = new byte[index.getShort() & 0xffff];
+                index.get(name);
+                names.add(new String(name, StandardCharsets.UTF_8));
+                offsets[i] = index.getLong();
+                lengths[i] = index.getInt();
+                if (offsets[i] < 5 || lengths[i] < 0 || offsets[i] + lengths[i] > indexOffset) {
+                    throw new IOException("CavernCorpus: " + path + " has a bad entry " + names.get(i));
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("CavernCorpus: " + path + " has a truncated index", e);
+        }
+        return new CavernCorpus(data, names, offsets, lengths);
+    }
+
+    /**
+     * Return a Writer that creates (or replaces) a corpus archive at path.
+     */
+    public static Writer create(Path path) throws IOException {
+        return new Writer(path);
+    }
+
+    /**
+     * Return the name under which the corpus stores the explore cavern (if explore is true)
+     * or escape cavern (otherwise) generated for seed.
+     */
+    public static String seedName(long seed, boolean explore) {
+        return seed + (explore ? "/explore" : "/escape");
+    }
+
+    /**
+     * Return the number of caverns in this corpus.
+     */
+    public int size() {
+        return names.size();
+    }
+
+    /**
+     * Return the names of the caverns in this corpus, in the order they were added.
+     */
+    public List<String> names() {
+        return names;
+    }
+
+    /**
+     * Return true iff this corpus has a cavern named name.
+     */
+    public boolean contains(String name) {
+        return byName.containsKey(name);
+    }
+
+    /**
+     * Decode the i-th cavern of this corpus and return it.
+     * Precondition: 0 <= i < size().
+     */
+    public Cavern get(int i) {
+        ByteBuffer buf = data.duplicate();
+        buf.position((int) offsets[i]);
+        buf.limit((int) offsets[i] + lengths[i]);
+        return Cavern.deserializeBinary(buf);
+    }
+
+    /**
+     * Decode the cavern named name and return it.
+     * Throw an IllegalArgumentException if this corpus has no cavern of that name.
+     */
+    public Cavern get(String name) {
+        Integer i = byName.get(name);
+        if (i == null) {
+            throw new IllegalArgumentException("CavernCorpus: No cavern named " + name);
+        }
+        return get(i);
+    }
+
+    /**
+     * Decode the explore and escape caverns stored for seed and return them.
+     * Throw an IllegalArgumentException if this corpus has no caverns for seed.
+     */
+    public CavernFactory.Caverns getCaverns(long seed) {
+        return new CavernFactory.Caverns(seed, get(seedName(seed, true)), get(seedName(seed, false)));
+    }
+
+    /**
+     * Return the seeds whose caverns are stored in this corpus, in the order they were added.
+     */
+    public long[] seeds() {
+        return names.stream()
+                .filter((name) -> name.endsWith("/explore"))
+                .map((name) -> name.substring(0, name.length() - "/explore".length()))
+                .filter((seed) -> seed.matches("-?\\d+") && byName.containsKey(seed + "/escape"))
+                .mapToLong(Long::parseLong)
+                .toArray();
+    }
+
+    /**
+     * Return a stream of the caverns of this corpus in order, each decoded when the stream reaches it.
+     * The stream is sequential; make it parallel to decode (and use) caverns on several threads.
+     */
+    public Stream<Cavern> stream() {
+        return IntStream.range(0, size()).mapToObj(this::get);
+    }
+
+    /**
+     * An instance writes a corpus archive. Caverns are encoded and written as they are added,
+     * and the index is written when the Writer is closed.
+     */
+    public static final class Writer implements AutoCloseable {
+        private final DataOutputStream out;
+        private final List<String> names = new ArrayList<>();
+        private final Set<String> nameSet = new HashSet<>();
+        private long[] offsets = new long[16];
+        private int[] lengths = new int[16];
+        private long position;
+
+        /**
+         * Constructor: a Writer for a new archive at path.
+         */
+        private Writer(Path path) throws IOException {
+            OutputStream file = Files.newOutputStream(path);
+            out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            position = 5;
+        }
+
+        /**
+         * Add cavern to the archive under name.
+         * Throw an IllegalArgumentException if the archive already has a cavern named name.
+         */
+        public Writer add(String name, Cavern cavern) throws IOException {
+            if (name.getBytes(StandardCharsets.UTF_8).length > 0xffff) {
+                throw new IllegalArgumentException("CavernCorpus: Name is too long");
+            }
+            if (!nameSet.add(name)) {
+                throw new IllegalArgumentException("CavernCorpus: Duplicate name " + name);
+            }
+            byte[] encoded = cavern.serializeBinary();
+            int i = names.size();
+            if (i == offsets.length) {
+                offsets = Arrays.copyOf(offsets, 2 * i);
+                lengths = Arrays.copyOf(lengths, 2 * i);
+            }
+            names.add(name);
+            offsets[i] = position;
+            lengths[i] = encoded.length;
+            out.write(encoded);
+            position += encoded.length;
+            return this;
+        }
+
+        /**
+         * Add the cavern in the file at path, in either the text format of Cavern.serialize()
+         * or the binary format, under name.
+         */
+        public Writer add(String name, Path path) throws IOException {
+            return add(name, Cavern.load(path));
+        }
+
+        /**
+         * Add the explore and escape caverns that GameState generates for seed,
+         * under the names seedName(seed, true) and seedName(seed, false).
+         */
+        public Writer addSeed(long seed) throws IOException {
+            return add(CavernFactory.generate(seed));
+        }
+
+        /**
+         * Add the explore and escape caverns in caverns under the names for their seed.
+         */
+        public Writer add(CavernFactory.Caverns caverns) throws IOException {
+            add(seedName(caverns.getSeed(), true), caverns.getExploreCavern());
+            return add(seedName(caverns.getSeed(), false), caverns.getEscapeCavern());
+        }
+
+        /**
+         * Write the index and close the archive.
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                long indexOffset = position;
+                out.writeInt(names.size());
+                for (int i = 0; i < names.size(); i++) {
+                    byte[] name = names.get(i).getBytes(StandardCharsets.UTF_8);
+                    out.writeShort(name.length);
+                    out.write(name);
+                    out.writeLong(offsets[i]);
+                    out.writeInt(lengths[i]);
+                }
+                out.writeLong(indexOffset);
+            } finally {
+                out.close();
+            }
+        }
+    }
+}
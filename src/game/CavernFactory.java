@@ -0,0 +1,209 @@
+package game;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * An instance generates the explore and escape caverns for many seeds in parallel
+ * on a ForkJoin pool. Generated caverns are handed over through a bounded queue,
+ * so generation can run ahead of (and overlap with) solving without using
+ * unbounded memory.
+ * <p>
+ * Each seed has its own source of randomness, so the caverns for a seed are
+ * exactly those that GameState generates for the same seed, whatever the
+ * order in which seeds are generated.
+ */
+public class CavernFactory implements AutoCloseable {
+
+    private final ForkJoinPool pool;
+    private final int capacity;
+
+    /**
+     * Constructor: a factory that uses all available processors and buffers
+     * two generated seeds per processor.
+     */
+    public CavernFactory() {
+        this(Runtime.getRuntime().availableProcessors(), 2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor: a factory that generates on parallelism threads and buffers
+     * at most capacity generated seeds that have not been consumed yet.
+     */
+    public CavernFactory(int parallelism, int capacity) {
+        if (parallelism < 1 || capacity < 1) {
+            throw new IllegalArgumentException("CavernFactory: parallelism and capacity must be positive");
+        }
+        pool = new ForkJoinPool(parallelism);
+        this.capacity = capacity;
+    }
+
+    /**
+     * Return the explore and escape caverns for seed, as generated by GameState.
+     * This method is thread-safe.
+     */
+    public static Caverns generate(long seed) {
+        return generate(seed, Cavern.GenerationMode.REJECTION);
+    }
+
+    /**
+     * Return the explore and escape caverns for seed, generated using mode.
+     * With {@code Cavern.GenerationMode.REJECTION} these are the caverns GameState generates.
+     * This method is thread-safe.
+     */
+    public static Caverns generate(long seed, Cavern.GenerationMode mode) {
+        Random rand = new Random(seed);
+        int rows = rand.nextInt(GameState.MAX_ROWS - GameState.MIN_ROWS + 1) + GameState.MIN_ROWS;
+        int cols = rand.nextInt(GameState.MAX_COLS - GameState.MIN_COLS + 1) + GameState.MIN_COLS;
+        Cavern explore = Cavern.digExploreCavern(rows, cols, rand, mode);
+        Tile orbTile = explore.getTarget().getTile();
+        Cavern escape = Cavern.digEscapeCavern(rows, cols, orbTile.getRow(), orbTile.getColumn(), rand, mode);
+        return new Caverns(seed, explore, escape);
+    }
+
+    /**
+     * Return the explore and escape caverns of size (rows, cols) for seed, generated using mode.
+     * Unlike generate(long), the dimensions are not drawn from the seed and may exceed
+     * GameState.MAX_ROWS and GameState.MAX_COLS, so this is the entry point for large maps.
+     * Generation is iterative, so the size is limited only by memory.
+     * This method is thread-safe.
+     */
+    public static Caverns generate(long seed, int rows, int cols, Cavern.GenerationMode mode) {
+        if (rows < GameState.MIN_ROWS || cols < GameState.MIN_COLS) {
+            throw new IllegalArgumentException("CavernFactory: a cavern must have at least "
+                    + GameState.MIN_ROWS + " rows and " + GameState.MIN_COLS + " columns");
+        }
+        Random rand = new Random(seed);
+        Cavern explore = Cavern.digExploreCavern(rows, cols, rand, mode);
+        Tile orbTile = explore.getTarget().getTile();
+        Cavern escape = Cavern.digEscapeCavern(rows, cols, orbTile.getRow(), orbTile.getColumn(), rand, mode);
+        return new Caverns(seed, explore, escape);
+    }
+
+    /**
+     * Return n seeds drawn from a SplittableRandom seeded with masterSeed.
+     * The same masterSeed always gives the same seeds.
+     */
+    public static long[] seeds(long masterSeed, int n) {
+        return new SplittableRandom(masterSeed).longs(n).toArray();
+    }
+
+    /**
+     * Start generating the caverns for every seed in seeds and return an iterator over
+     * the results, which yields exactly one Caverns per seed in the order they finish.
+     * Generation stalls while capacity results are waiting to be consumed.
+     * If generating the caverns for a seed fails, next() throws an IllegalStateException
+     * whose cause is the failure.
+     */
+    public Iterator<Caverns> generateAll(long... seeds) {
+        BlockingQueue<Caverns> queue = new ArrayBlockingQueue<>(capacity);
+        for (long seed : seeds) {
+            pool.execute(() -> {
+                Caverns result;
+                try {
+                    result = generate(seed);
+                } catch (Throwable t) {
+                    result = new Caverns(seed, t);
+                }
+                try {
+                    queue.put(result);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+
+        return new Iterator<Caverns>() {
+            private int remaining = seeds.length;
+
+            @Override
+            public boolean hasNext() {
+                return remaining > 0;
+            }
+
+            @Override
+            public Caverns next() {
+                if (remaining == 0) {
+                    throw new NoSuchElementException();
+                }
+                remaining--;
+                Caverns result;
+                try {
+                    result = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for a cavern", e);
+                }
+                if (result.error != null) {
+                    throw new IllegalStateException("Could not generate caverns for seed " + result.seed,
+                            result.error);
+                }
+                return result;
+            }
+        };
+    }
+
+    /**
+     * Stop the generation threads. Seeds that have not been generated yet are abandoned.
+     */
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * An instance is the explore and escape caverns generated for a seed.
+     */
+    public static final class Caverns {
+        private final long seed;
+        private final Cavern explore;
+        private final Cavern escape;
+        private final Throwable error;
+
+        /**
+         * Constructor: the caverns explore and escape generated for seed.
+         */
+        /* package */ Caverns(long seed, Cavern explore, Cavern escape) {
+            this.seed = seed;
+            this.explore = explore;
+            this.escape = escape;
+            this.error = null;
+        }
+
+        /**
+         * Constructor: the failure error to generate the caverns for seed.
+         */
+        private Caverns(long seed, Throwable error) {
+            this.seed = seed;
+            this.explore = null;
+            this.escape = null;
+            this.error = error;
+        }
+
+        /**
+         * Return the seed the caverns were generated from.
+         */
+        public long getSeed() {
+            return seed;
+        }
+
+        /**
+         * Return the cavern for the explore phase.
+         */
+        public Cavern getExploreCavern() {
+            return explore;
+        }
+
+        /**
+         * Return the cavern for the escape phase.
+         */
+        public Cavern getEscapeCavern() {
+            return escape;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package game;
+
+/**
+ * An instance is a frozen, array-backed snapshot of the graph of a Cavern.
+ * <p>
+ * The open tiles of the cavern are numbered densely 0..n-1 in row-major order
+ * (so the index of a node is its id), and adjacency is stored in compressed sparse row (CSR) form: the neighbours of
+ * node v are neighbour(i) for neighbourStart(v) <= i < neighbourEnd(v), and the
+ * length of the edge to neighbour(i) is weight(i).
+ * Gold, row, column and tile type are held in parallel arrays indexed by node.
+ * <p>
+ * Gold values are those the cavern was generated with (see Tile.getOriginalGold()),
+ * so gold that is picked up after the snapshot is taken is not reflected here.
+ */
+public final class CompactGraph {
+    private static final Tile.Type[] TYPES = Tile.Type.values();
+
+    private final int rows;
+    private final int cols;
+    private final Node[] nodes;
+    private final int[] cellToIndex;
+    private final int[] offsets;
+    private final int[] neighbours;
+    private final int[] weights;
+    private final int[] gold;
+    private final int[] row;
+    private final int[] col;
+    private final byte[] type;
+    private final int maxWeight;
+
+    /**
+     * Constructor: a snapshot of the graph of cavern.
+     */
+    /* package */ CompactGraph(Cavern cavern) {
+        rows = cavern.getRowCount();
+        cols = cavern.getColumnCount();
+        int n = cavern.numOpenTiles();
+
+        nodes = new Node[n];
+        cellToIndex = new int[rows * cols];
+        int v = 0;
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                Node node = cavern.getNodeAt(r, c);
+                if (node.getTile().getType().isOpen()) {
+                    cellToIndex[r * cols + c] = v;
+                    nodes[v++] = node;
+                } else {
+                    cellToIndex[r * cols + c] = -1;
+                }
+            }
+        }
+
+        offsets = new int[n + 1];
+        gold = new int[n];
+        row = new int[n];
+        col = new int[n];
+        type = new byte[n];
+        int degrees = 0;
+        for (v = 0; v < n; v++) {
+            Tile t = nodes[v].getTile();
+            gold[v] = t.getOriginalGold();
+            row[v] = t.getRow();
+            col[v] = t.getColumn();
+            type[v] = (byte) t.getType().ordinal();
+            degrees += nodes[v].degree();
+        }
+
+        neighbours = new int[degrees];
+        weights = new int[degrees];
+        int i = 0;
+        for (v = 0; v < n; v++) {
+            offsets[v] = i;
+            // Visit the neighbours in a fixed (N, E, S, W) order so the snapshot is deterministic.
+            for (int d = 0; d < Node.DEGREE; d++) {
+                Node w = nodes[v].getNeighbour(d);
+                if (w != null) {
+                    neighbours[i] = (int) w.getId();
+                    weights[i] = nodes[v].getExitLength(d);
+                    i++;
+                }
+            }
+        }
+        offsets[n] = i;
+
+        int max = 0;
+        for (int w : weights) {
+            max = Math.max(max, w);
+        }
+        maxWeight = max;
+    }
+
+    /**
+     * Return the number of nodes in this graph.
+     */
+    public int size() {
+        return nodes.length;
+    }
+
+    /**
+     * Return the number of directed edges in this graph (twice the number of connections).
+     */
+    public int edgeCount() {
+        return neighbours.length;
+    }
+
+    /**
+     * Return the number of rows in the grid of the cavern.
+     */
+    public int getRowCount() {
+        return rows;
+    }
+
+    /**
+     * Return the number of columns in the grid of the cavern.
+     */
+    public int getColumnCount() {
+        return cols;
+    }
+
+    /**
+     * Return the index of node n, or -1 if n is not an open tile of this graph.
+     */
+    public int indexOf(Node n) {
+        return indexAt(n.getTile().getRow(), n.getTile().getColumn());
+    }
+
+    /**
+     * Return the index of the node at (r, c), or -1 if (r, c) is a wall.
+     * Precondition: ({@code r}, {@code c}) must be in the grid.
+     */
+    public int indexAt(int r, int c) {
+        return cellToIndex[r * cols + c];
+    }
+
+    /**
+     * Return the Node with index v.
+     */
+    public Node node(int v) {
+        return nodes[v];
+    }
+
+    /**
+     * Return the position in the neighbour arrays of the first neighbour of node v.
+     */
+    public int neighbourStart(int v) {
+        return offsets[v];
+    }
+
+    /**
+     * Return the position in the neighbour arrays just past the last neighbour of node v.
+     */
+    public int neighbourEnd(int v) {
+        return offsets[v + 1];
+    }
+
+    /**
+     * Return the number of neighbours of node v.
+     */
+    public int degree(int v) {
+        return offsets[v + 1] - offsets[v];
+    }
+
+    /**
+     * Return the node index at position i of the neighbour array.
+     */
+    public int neighbour(int i) {
+        return neighbours[i];
+    }
+
+    /**
+     * Return the length of the edge at position i of the neighbour array.
+     */
+    public int weight(int i) {
+        return weights[i];
+    }
+
+    /**
+     * Return the largest edge length in this graph, or 0 if it has no edges.
+     */
+    public int maxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * Return the gold the node with index v was generated with.
+     */
+    public int gold(int v) {
+        return gold[v];
+    }
+
+    /**
+     * Return the row of the node with index v.
+     */
+    public int row(int v) {
+        return row[v];
+    }
+
+    /**
+     * Return the column of the node with index v.
+     */
+    public int column(int v) {
+        return col[v];
+    }
+
+    /**
+     * Return the tile type of the node with index v.
+     */
+    public Tile.Type type(int v) {
+        return TYPES[type[v]];
+    }
+}
@@ -4,6 +4,9 @@ import java.util.Map;
 
 /**
  * An Edge represents an immutable directed, weighted edge.
+ * The edges of a cavern are stored once per connection, and the Edges leaving a Node
+ * are views of them created on demand, so two Edges are equal if they have the same
+ * source, destination and length.
  */
 public class Edge {
 
@@ -72,4 +75,27 @@ public class Edge {
     public Node getDest() {
         return dest;
     }
+
+    /**
+     * Return true if ob is an Edge with the same source, destination and length as this one.
+     */
+    @Override
+    public boolean equals(Object ob) {
+        if (ob == this) {
+            return true;
+        }
+        if (!(ob instanceof Edge)) {
+            return false;
+        }
+        Edge e = (Edge) ob;
+        return length == e.length && src.equals(e.src) && dest.equals(e.dest);
+    }
+
+    /**
+     * Return a hash code for this edge, based on its source, destination and length.
+     */
+    @Override
+    public int hashCode() {
+        return (31 * src.hashCode() + dest.hashCode()) * 31 + length;
+    }
 }
@@ -0,0 +1,121 @@
+package game;
+
+/**
+ * An instance holds the undirected edges of a cavern grid, one array slot per connection.
+ * <p>
+ * Cell (r, c) is packed as r * cols + c and owns two slots: one for its connection to the
+ * cell to the south and one for its connection to the cell to the east. The north and west
+ * connections of a cell are the south and east slots of its neighbours, so each connection
+ * is stored once, and its length is shared by both directions. A slot holds the length of
+ * the connection, or 0 if there is none.
+ * <p>
+ * Edge objects are not stored: Node creates them as views on demand.
+ */
+/* package */ final class EdgeStore {
+    /**
+     * The largest edge length that can be stored.
+     */
+    /* package */ static final int MAX_LENGTH = Byte.MAX_VALUE;
+
+    private static final int SOUTH = 0;
+    private static final int EAST = 1;
+
+    private final int rows;
+    private final int cols;
+    private final Node[] nodes;
+    private final byte[] lengths;
+
+    /**
+     * Constructor: an instance for a grid of size (rows, cols) with no nodes and no edges.
+     */
+    /* package */ EdgeStore(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        nodes = new Node[rows * cols];
+        lengths = new byte[2 * rows * cols];
+    }
+
+    /**
+     * Make n the node at its tile's position in the grid.
+     */
+    /* package */ void add(Node n) {
+        nodes[n.getTile().getRow() * cols + n.getTile().getColumn()] = n;
+    }
+
+    /**
+     * Connect a and b with an edge of length len, replacing any edge between them.
+     * Throw an IllegalArgumentException if a and b are not adjacent on the grid or
+     * len is not in 1..MAX_LENGTH.
+     */
+    /* package */ void connect(Node a, Node b, int len) {
+        int slot = slot(a, b);
+        if (slot < 0) {
+            throw new IllegalArgumentException("connect: Nodes must be adjacent tiles");
+        }
+        if (len < 1 || len > MAX_LENGTH) {
+            throw new IllegalArgumentException("connect: Edge length must be in 1.." + MAX_LENGTH);
+        }
+        lengths[slot] = (byte) len;
+    }
+
+    /**
+     * Return the slot of the connection between a and b,
+     * or -1 if a and b are not adjacent on the grid.
+     */
+    private int slot(Node a, Node b) {
+        int aRow = a.getTile().getRow();
+        int aCol = a.getTile().getColumn();
+        int dRow = b.getTile().getRow() - aRow;
+        int dCol = b.getTile().getColumn() - aCol;
+        if (dRow == 1 && dCol == 0) return 2 * (aRow * cols + aCol) + SOUTH;
+        if (dRow == -1 && dCol == 0) return 2 * ((aRow - 1) * cols + aCol) + SOUTH;
+        if (dRow == 0 && dCol == 1) return 2 * (aRow * cols + aCol) + EAST;
+        if (dRow == 0 && dCol == -1) return 2 * (aRow * cols + aCol - 1) + EAST;
+        return -1;
+    }
+
+    /**
+     * Return the slot of the connection leaving cell (r, c) in direction d,
+     * or -1 if that direction leaves the grid.
+     */
+    private int slot(int r, int c, Cavern.Direction d) {
+        switch (d) {
+            case NORTH:
+                return r == 0 ? -1 : 2 * ((r - 1) * cols + c) + SOUTH;
+            case EAST:
+                return c == cols - 1 ? -1 : 2 * (r * cols + c) + EAST;
+            case SOUTH:
+                return r == rows - 1 ? -1 : 2 * (r * cols + c) + SOUTH;
+            case WEST:
+                return c == 0 ? -1 : 2 * (r * cols + c - 1) + EAST;
+            default:
+                throw new IllegalStateException("Unexpected direction!");
+        }
+    }
+
+    /**
+     * Return the length of the edge leaving cell (r, c) in direction d, or 0 if there is none.
+     */
+    /* package */ int length(int r, int c, Cavern.Direction d) {
+        int slot = slot(r, c, d);
+        return slot < 0 ? 0 : lengths[slot];
+    }
+
+    /**
+     * Return the length of the edge between a and b, or 0 if there is none.
+     */
+    /* package */ int length(Node a, Node b) {
+        int slot = slot(a, b);
+        return slot < 0 ? 0 : lengths[slot];
+    }
+
+    /**
+     * Return the node in direction d from cell (r, c) if there is an edge to it, and null otherwise.
+     */
+    /* package */ Node neighbour(int r, int c, Cavern.Direction d) {
+        if (length(r, c, d) == 0) {
+            return null;
+        }
+        return nodes[(r + d.getRowOffset()) * cols + c + d.getColumnOffset()];
+    }
+}
@@ -1,6 +1,7 @@
 package game;
 
 import java.util.Collection;
+import java.util.List;
 
 /**
  * The state of the game while escaping from the cavern.
@@ -30,6 +31,24 @@ public interface EscapeState {
      */
     public Collection<Node> getVertices();
 
+    /**
+     * Return a frozen, array-backed snapshot of the graph of the cavern.
+     * The snapshot is shared, so solvers can use it without copying the graph themselves.
+     */
+    public CompactGraph getCompactGraph();
+
+    /**
+     * Return the length of the shortest path from n to the exit.
+     * The distances of all nodes are computed once per cavern, so this takes constant time.
+     */
+    public int getDistanceToExit(Node n);
+
+    /**
+     * Return a shortest path from n to the exit, as the list of its nodes from n to the exit.
+     * This takes time proportional to the length of the list.
+     */
+    public List<Node> getPathToExit(Node n);
+
     /**
      * Change your current location n.
      * Throw an IllegalArgumentException if n is not a neihgbor of your current location.
@@ -45,6 +64,20 @@ public interface EscapeState {
      */
     public void pickUpGold();
 
+    /**
+     * Move along path, the nodes to move to in order, and if collectGold is true pick up
+     * the gold at your current location and at every node of path as you reach it.
+     * A node that is the same as the one before it (or, for the first, as your current
+     * location) is skipped. Return the gold picked up.
+     * <p>
+     * This takes the same time and collects the same gold as the equivalent calls of moveTo
+     * and pickUpGold, but the whole path is checked first and then taken in one call.
+     * Throw an IllegalArgumentException, without moving at all, if a node of path is not a
+     * neighbour of the one before it. If taking path would take more than the time remaining,
+     * throw what moveTo throws when the time runs out, also without moving at all.
+     */
+    public int follow(List<Node> path, boolean collectGold);
+
     /**
      * Return the time remaining to escape from the cavern.
      * This value changes with every call to moveTo(Node),
@@ -11,6 +11,11 @@ import java.util.Collection;
  * to search through the cavern and find the target.
  */
 public interface ExplorationState {
+    /**
+     * The most neighbours a location can have.
+     */
+    public static final int MAX_NEIGHBOURS = Node.DEGREE;
+
     /**
      * Return the unique identifier associated with your current location.
      */
@@ -27,6 +32,15 @@ public interface ExplorationState {
      */
     public Collection<NodeStatus> getNeighbours();
 
+    /**
+     * Store the identifiers of all direct neighbours of your current location in ids,
+     * and their distances to the target along the grid in distances, and return how many
+     * neighbours there are. They are the neighbours getNeighbours() returns, in the same order,
+     * but nothing is allocated, so this suits an explorer that should produce no garbage.
+     * Both arrays must have room for MAX_NEIGHBOURS elements.
+     */
+    public int getNeighbours(long[] ids, int[] distances);
+
     /**
      * Return your current distance along the grid (NOT THE GRAPH) from the target.
      */
@@ -38,4 +52,17 @@ public interface ExplorationState {
      * Throw an IllegalArgumentException if id is not a neihgbor of your current location.
      */
     public void moveTo(long id);
+
+    /**
+     * Move along the route given by the first count identifiers in ids: each must be
+     * that of a neighbour of the node before it, the first of a neighbour of your current
+     * location. This takes the same steps as calling moveTo for each of them, in one call.
+     * Throw an IllegalArgumentException, without moving at all, if the route is not valid.
+     */
+    public void moveAlong(long[] ids, int count);
+
+    /**
+     * Move along the route given by all the identifiers in ids, as moveAlong(ids, ids.length).
+     */
+    public void moveAlong(long[] ids);
 }
@@ -0,0 +1,198 @@
+package game;
+
+/**
+ * An instance is the outcome of one game: its seed, how the explore and escape phases went,
+ * the score, and how long (in wall-clock time) generation and each phase took.
+ * Instances are immutable, so results from concurrent games can be shared freely.
+ */
+public final class GameResult {
+    private final long seed;
+    private final int exploreSteps;
+    private final int minExploreSteps;
+    private final double bonus;
+    private final int gold;
+    private final int score;
+    private final boolean exploreSucceeded;
+    private final boolean exploreErrored;
+    private final boolean escapeSucceeded;
+    private final boolean escapeErrored;
+    private final int generationAttempts;
+    private final long generationNanos;
+    private final long exploreNanos;
+    private final long escapeNanos;
+    private final Throwable error;
+
+    /**
+     * Constructor: the result of a game that was played.
+     */
+    /* package */ GameResult(long seed, int exploreSteps, int minExploreSteps, double bonus, int gold,
+                             int score, boolean exploreSucceeded, boolean exploreErrored,
+                             boolean escapeSucceeded, boolean escapeErrored, int generationAttempts,
+                             long generationNanos, long exploreNanos, long escapeNanos, Throwable error) {
+        this.seed = seed;
+        this.exploreSteps = exploreSteps;
+        this.minExploreSteps = minExploreSteps;
+        this.bonus = bonus;
+        this.gold = gold;
+        this.score = score;
+        this.exploreSucceeded = exploreSucceeded;
+        this.exploreErrored = exploreErrored;
+        this.escapeSucceeded = escapeSucceeded;
+        this.escapeErrored = escapeErrored;
+        this.generationAttempts = generationAttempts;
+        this.generationNanos = generationNanos;
+        this.exploreNanos = exploreNanos;
+        this.escapeNanos = escapeNanos;
+        this.error = error;
+    }
+
+    /**
+     * Return the result of a game for seed that could not be played because generating
+     * its caverns failed with error after generationNanos.
+     */
+    /* package */ static GameResult failedGeneration(long seed, long generationNanos, Throwable error) {
+        return new GameResult(seed, 0, 0, GameState.MIN_BONUS, 0, 0, false, true, false, true, 0,
+                generationNanos, 0, 0, error);
+    }
+
+    /**
+     * Return the result of a game for seed that could not be played because setting it up
+     * failed with error, after its caverns were generated in generationAttempts attempts
+     * taking generationNanos (both 0 if that is not known).
+     */
+    /* package */ static GameResult failed(long seed, int generationAttempts, long generationNanos,
+                                           Throwable error) {
+        return new GameResult(seed, 0, 0, GameState.MIN_BONUS, 0, 0, false, true, false, true,
+                generationAttempts, generationNanos, 0, 0, error);
+    }
+
+    /**
+     * Return the result of a game for seed that could not be played because error was thrown
+     * before or while its caverns were set up, at a point where nothing else is known.
+     */
+    /* package */ static GameResult failed(long seed, Throwable error) {
+        return failed(seed, 0, 0, error);
+    }
+
+    /**
+     * Return the seed of the game.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Return the number of steps taken during the explore phase.
+     */
+    public int getExploreSteps() {
+        return exploreSteps;
+    }
+
+    /**
+     * Return the length of the shortest path from the entrance to the orb.
+     */
+    public int getMinExploreSteps() {
+        return minExploreSteps;
+    }
+
+    /**
+     * Return the bonus multiplier earned during the explore phase.
+     */
+    public double getBonus() {
+        return bonus;
+    }
+
+    /**
+     * Return the gold collected during the escape phase.
+     */
+    public int getGold() {
+        return gold;
+    }
+
+    /**
+     * Return the score: the gold collected times the bonus multiplier.
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Return true iff the explore phase ended on the orb.
+     */
+    public boolean getExploreSucceeded() {
+        return exploreSucceeded;
+    }
+
+    /**
+     * Return true iff the explore phase threw an exception.
+     */
+    public boolean getExploreErrored() {
+        return exploreErrored;
+    }
+
+    /**
+     * Return true iff the escape phase ended at the exit.
+     */
+    public boolean getEscapeSucceeded() {
+        return escapeSucceeded;
+    }
+
+    /**
+     * Return true iff the escape phase threw an exception (other than running out of time).
+     */
+    public boolean getEscapeErrored() {
+        return escapeErrored;
+    }
+
+    /**
+     * Return true iff both phases succeeded without errors.
+     */
+    public boolean succeeded() {
+        return exploreSucceeded && escapeSucceeded && !exploreErrored && !escapeErrored;
+    }
+
+    /**
+     * Return the number of caverns generated to produce the two of this game (2 if neither
+     * needed a retry), or 0 if generating them failed.
+     */
+    public int getGenerationAttempts() {
+        return generationAttempts;
+    }
+
+    /**
+     * Return the time taken to generate the caverns, in nanoseconds
+     * (0 if they were generated elsewhere).
+     */
+    public long getGenerationNanos() {
+        return generationNanos;
+    }
+
+    /**
+     * Return the time taken by the explore phase, in nanoseconds.
+     */
+    public long getExploreNanos() {
+        return exploreNanos;
+    }
+
+    /**
+     * Return the time taken by the escape phase, in nanoseconds.
+     */
+    public long getEscapeNanos() {
+        return escapeNanos;
+    }
+
+    /**
+     * Return the first exception thrown while generating the caverns or by either phase,
+     * or null if there was none.
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("seed %d: explore %d/%d steps%s, bonus %.2f, gold %d, score %d%s",
+                seed, exploreSteps, minExploreSteps, exploreSucceeded ? "" : " (failed)", bonus, gold, score,
+                escapeSucceeded ? "" : " (escape failed)");
+    }
+}
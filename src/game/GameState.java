@@ -4,12 +4,12 @@ import gui.GUI;
 import student.Explorer;
 
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import java.util.Random;
 
@@ -31,6 +31,8 @@ public class GameState implements ExplorationState, EscapeState {
     private final Explorer explorer;
     private final Optional<GUI> gui;
     private final long seed;
+    /** True iff nothing is printed: the outcome is reported only through result(). */
+    private final boolean quiet;
 
     private Node position;
     private int stepsTaken;
@@ -42,11 +44,20 @@ public class GameState implements ExplorationState, EscapeState {
     private boolean exploreErrored = false;
     private boolean escapeErrored = false;
     private int minTimeToExplore;
+    private Throwable error;
+    private long exploreNanos;
+    private long escapeNanos;
+    /** Records the moves and pickups of this game, or null if it is not being recorded. */
+    private Replay.Recorder recorder;
 
+    /**
+     * Constructor: an instance for the caverns saved at exploreCavernPath and escapeCavernPath,
+     * each in either the text or the binary format (see Cavern.load).
+     */
     public GameState(Path exploreCavernPath, Path escapeCavernPath) throws IOException {
-        exploreCavern = Cavern.deserialize(Files.readAllLines(exploreCavernPath));
+        exploreCavern = Cavern.load(exploreCavernPath);
         minTimeToExplore = exploreCavern.minPathLengthToTarget(exploreCavern.getEntrance());
-        escapeCavern = Cavern.deserialize(Files.readAllLines(escapeCavernPath));
+        escapeCavern = Cavern.load(escapeCavernPath);
 
         explorer = new Explorer();
 
@@ -56,40 +67,35 @@ public class GameState implements ExplorationState, EscapeState {
         goldCollected = 0;
 
         seed = -1;
+        quiet = false;
 
         stage = Stage.EXPLORE;
         gui = Optional.of(new GUI(exploreCavern, position.getTile().getRow(), position.getTile().getColumn(), 0));
     }
 
     /**
-     * Constructor: a random instance with a GUI only if useGUI is true.
-     */
-    private GameState(boolean useGui) {
-        this((new Random()).nextLong(), useGui);
-    }
-
-    /**
-     * Constructor: a random instance with a GUI only if useGUI is true.
-     * The randomness is based on seed.
+     * Constructor: an instance for the already generated caverns, played by explorer,
+     * with a GUI only if useGUI is true, that prints nothing if quiet is true (in which case
+     * explorer is made quiet too).
      */
-    private GameState(long seed, boolean useGui) {
-        Random rand = new Random(seed);
-        int ROWS = rand.nextInt(MAX_ROWS - MIN_ROWS + 1) + MIN_ROWS;
-        int COLS = rand.nextInt(MAX_COLS - MIN_COLS + 1) + MIN_COLS;
-        exploreCavern = Cavern.digExploreCavern(ROWS, COLS, rand);
+    private GameState(CavernFactory.Caverns caverns, boolean useGui, boolean quiet, Explorer explorer) {
+        this.quiet = quiet;
+        exploreCavern = caverns.getExploreCavern();
         minTimeToExplore = exploreCavern.minPathLengthToTarget(exploreCavern.getEntrance());
-        Tile orbTile = exploreCavern.getTarget().getTile();
-        escapeCavern = Cavern.digEscapeCavern(ROWS, COLS, orbTile.getRow(), orbTile.getColumn(), rand);
+        escapeCavern = caverns.getEscapeCavern();
 
         position = exploreCavern.getEntrance();
         stepsTaken = 0;
         timeRemaining = Integer.MAX_VALUE;
         goldCollected = 0;
 
-        explorer = new Explorer();
+        this.explorer = explorer;
+        if (quiet) {
+            explorer.setQuiet(true);
+        }
         stage = Stage.EXPLORE;
 
-        this.seed = seed;
+        this.seed = caverns.getSeed();
 
         if (useGui) {
             gui = Optional.of(new GUI(exploreCavern, position.getTile().getRow(),
@@ -100,25 +106,131 @@ public class GameState implements ExplorationState, EscapeState {
     }
 
     public static int runNewGame(long seed, boolean useGui) {
-        GameState state;
-        if (seed != 0) {
-            state = new GameState(seed, useGui);
-        } else {
-            state = new GameState(useGui);
-        }
+        return runNewGame(seed, useGui, new Explorer());
+    }
+
+    /**
+     * Run a game for seed (or for a random seed if seed is 0) played by explorer,
+     * with a GUI only if useGui is true, and return the score.
+     */
+    public static int runNewGame(long seed, boolean useGui, Explorer explorer) {
+        return runNewGame(CavernFactory.generate(seed != 0 ? seed : new Random().nextLong()), useGui, explorer);
+    }
+
+    /**
+     * Run a game on caverns that were generated in advance (for example by a CavernFactory)
+     * and return the score.
+     */
+    public static int runNewGame(CavernFactory.Caverns caverns, boolean useGui) {
+        return runNewGame(caverns, useGui, new Explorer());
+    }
+
+    /**
+     * Run a game played by explorer on caverns that were generated in advance
+     * and return the score.
+     */
+    public static int runNewGame(CavernFactory.Caverns caverns, boolean useGui, Explorer explorer) {
+        GameState state = new GameState(caverns, useGui, false, explorer);
         System.out.println("Seed : " + state.seed);
         state.run();
         return state.getScore();
     }
 
+    /**
+     * Run a game as runNewGame(caverns, useGui, explorer) does, save a replay of it
+     * (see Replay) to replayPath and return the score.
+     */
+    public static int runNewGame(CavernFactory.Caverns caverns, boolean useGui, Explorer explorer,
+                                 Path replayPath) throws IOException {
+        GameState state = new GameState(caverns, useGui, false, explorer);
+        state.recorder = new Replay.Recorder(state.seed, state.exploreCavern, state.escapeCavern);
+        System.out.println("Seed : " + state.seed);
+        state.run();
+        state.recorder.toReplay().save(replayPath);
+        return state.getScore();
+    }
+
+    /**
+     * Play the game recorded in replay again on caverns, which must be the caverns it was
+     * played on with none of their gold picked up, without running the explorer that played
+     * it, and return its result. Print the outcome as runNewGame does, and show the game in
+     * a GUI only if useGui is true.
+     * Throw an IllegalArgumentException if caverns are not the caverns of replay.
+     */
+    public static GameResult replay(CavernFactory.Caverns caverns, Replay replay, boolean useGui) {
+        if (!replay.matches(caverns)) {
+            throw new IllegalArgumentException("replay: The caverns are not those the game was played on");
+        }
+        Explorer explorer = new ReplayExplorer(replay, caverns.getExploreCavern().getEntrance());
+        GameState state = new GameState(caverns, useGui, false, explorer);
+        System.out.println("Seed : " + state.seed);
+        state.run();
+        return state.result(0);
+    }
+
+    /**
+     * Play a game on caverns that were generated in advance, with a new Explorer, without
+     * a GUI and without printing anything, and return its result. generationNanos is the
+     * time it took to generate the caverns. Games on different caverns do not share any
+     * state, so this method may be called from several threads at once.
+     */
+    public static GameResult runQuietGame(CavernFactory.Caverns caverns, long generationNanos) {
+        return runQuietGame(caverns, generationNanos, new Explorer());
+    }
+
+    /**
+     * Play a game as runQuietGame(caverns, generationNanos) does, but with explorer,
+     * which must not be used for any other game.
+     */
+    public static GameResult runQuietGame(CavernFactory.Caverns caverns, long generationNanos, Explorer explorer) {
+        GameState state = new GameState(caverns, false, true, explorer);
+        state.run();
+        return state.result(generationNanos);
+    }
+
+    /**
+     * Return a game on caverns that were generated in advance, played by explorer, without
+     * a GUI and without printing anything, that has not started. This lets the phases be
+     * run one at a time, for example by benchmarks.
+     */
+    /* package */ static GameState quietGame(CavernFactory.Caverns caverns, Explorer explorer) {
+        return new GameState(caverns, false, true, explorer);
+    }
+
     /**
      * Run the game: first find the Orb and then escape.
      */
     private void run() {
         // TODO: In the error cases we should really pop something up!
+        long start = System.nanoTime();
         explore();
+        exploreNanos = System.nanoTime() - start;
         if (!exploreSucceeded) return;
+        start = System.nanoTime();
         escape();
+        escapeNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Return the result of this game, whose caverns took generationNanos to generate.
+     */
+    private GameResult result(long generationNanos) {
+        return new GameResult(seed, stepsTaken, minTimeToExplore, computeBonusFactor(), goldCollected,
+                getScore(), exploreSucceeded, exploreErrored, escapeSucceeded, escapeErrored,
+                exploreCavern.getGenerationAttempts() + escapeCavern.getGenerationAttempts(),
+                generationNanos, exploreNanos, escapeNanos, error);
+    }
+
+    /**
+     * Record t, thrown by the explorer, as the error of this game and print it unless quiet.
+     */
+    private void recordError(Throwable t) {
+        if (error == null) {
+            error = t;
+        }
+        if (!quiet) {
+            t.printStackTrace();
+        }
     }
 
     void explore() {
@@ -139,26 +251,17 @@ public class GameState implements ExplorationState, EscapeState {
             }
         } catch (Throwable t) {
             output(gui, "Your code caused an error  during the explore phase. Please see console output.");
-            System.err.println("We will move on to the escape phase anyway, but your solution is not correct!");
-            System.err.println("Here is the error that occurred.");
-            t.printStackTrace();
+            if (!quiet) {
+                System.err.println("We will move on to the escape phase anyway, but your solution is not correct!");
+                System.err.println("Here is the error that occurred.");
+            }
+            recordError(t);
             exploreErrored = true;
         }
     }
 
     void escape() {
-        stage = Stage.ESCAPE;
-        Tile orbTile = exploreCavern.getTarget().getTile();
-        position = escapeCavern.getNodeAt(orbTile.getRow(), orbTile.getColumn());
-        if (exploreSucceeded) {
-            timeRemaining = computeTimeToEscape();
-        } else {
-            timeRemaining = escapeCavern.minPathLengthToTarget(position);
-            gui.ifPresent((g) -> g.moveTo(position));
-        }
-
-        gui.ifPresent((g) -> g.setLighting(true));
-        gui.ifPresent((g) -> g.updateCavern(escapeCavern, timeRemaining));
+        startEscape();
 
         try {
             explorer.escape(this);
@@ -169,13 +272,16 @@ public class GameState implements ExplorationState, EscapeState {
             output(gui, "Your solution to escape ran out of steps before returning!");
         } catch (Throwable t) {
             output(gui, "Your code caused an error during the escape phase. Please see console output.");
-            t.printStackTrace();
+            recordError(t);
             escapeErrored = true;
         }
 
         if (!escapeSucceeded) {
             output(gui, "Your solution to escape failed to end at the stairs. Your code is not correct!");
         }
+        if (quiet) {
+            return;
+        }
         System.out.println("Gold collected   : " + getGoldCollected());
         DecimalFormat df = new DecimalFormat("#.##");
         System.out.println("Bonus multiplier : " + df.format(computeBonusFactor()));
@@ -183,11 +289,42 @@ public class GameState implements ExplorationState, EscapeState {
     }
 
     /**
-     * Return the time to escape
+     * Switch to the escape phase: put the explorer where the orb was, in the escape cavern,
+     * with the time it has to escape. This does not call the explorer.
+     */
+    void startEscape() {
+        stage = Stage.ESCAPE;
+        if (recorder != null) {
+            recorder.startEscape();
+        }
+        Tile orbTile = exploreCavern.getTarget().getTile();
+        position = escapeCavern.getNodeAt(orbTile.getRow(), orbTile.getColumn());
+        if (exploreSucceeded) {
+            timeRemaining = computeTimeToEscape();
+        } else {
+            timeRemaining = escapeCavern.minPathLengthToTarget(position);
+            gui.ifPresent((g) -> g.moveTo(position));
+        }
+
+        gui.ifPresent((g) -> g.setLighting(true));
+        gui.ifPresent((g) -> g.updateCavern(escapeCavern, timeRemaining));
+    }
+
+    /**
+     * Return the time to escape.
+     * The extra time beyond the shortest escape grows with the number of open tiles.
+     * Beyond the largest standard cavern it grows with the square root of that number
+     * instead, so the budget of a large-map cavern stays a similar multiple of the
+     * shortest escape rather than allowing almost every tile to be visited.
      */
     private int computeTimeToEscape() {
         int minTimeToEscape = escapeCavern.minPathLengthToTarget(position);
-        return (int) (minTimeToEscape + EXTRA_TIME_FACTOR * (Cavern.MAX_EDGE_WEIGHT + 1) * escapeCavern.numOpenTiles() / 2);
+        double openTiles = escapeCavern.numOpenTiles();
+        double standardTiles = MAX_ROWS * MAX_COLS;
+        if (openTiles > standardTiles) {
+            openTiles = Math.sqrt(openTiles * standardTiles);
+        }
+        return (int) (minTimeToEscape + EXTRA_TIME_FACTOR * (Cavern.MAX_EDGE_WEIGHT + 1) * openTiles / 2);
 
     }
 
@@ -212,16 +349,81 @@ public class GameState implements ExplorationState, EscapeState {
             throw new IllegalStateException("moveTo(ID) can only be called while exploring!");
         }
 
-        for (Node n : position.getNeighbours()) {
-            if (n.getId() == id) {
-                position = n;
-                stepsTaken++;
-                gui.ifPresent((g) -> g.updateBonus(computeBonusFactor()));
-                gui.ifPresent((g) -> g.moveTo(n));
-                return;
+        Node n = neighbourWithId(position, id);
+        if (n == null) {
+            throw new IllegalArgumentException("moveTo: Node must be adjacent to position");
+        }
+        if (recorder != null) {
+            recorder.move(position, n);
+        }
+        position = n;
+        stepsTaken++;
+        // Not gui.ifPresent(lambda): capturing lambdas would allocate on every step
+        if (gui.isPresent()) {
+            gui.get().updateBonus(computeBonusFactor());
+            gui.get().moveTo(n);
+        }
+    }
+
+    /**
+     * See moveAlong(long[] ids, int count). The whole route is checked before any of it
+     * is taken, and the bonus shown by the GUI is updated once, at the end. The GUI still
+     * shows every step, since it animates moves between adjacent tiles.
+     */
+    @Override
+    public void moveAlong(long[] ids, int count) {
+        if (stage != Stage.EXPLORE) {
+            throw new IllegalStateException("moveAlong can only be called while exploring!");
+        }
+        if (count < 0 || count > ids.length) {
+            throw new IllegalArgumentException("moveAlong: count must be between 0 and ids.length");
+        }
+
+        Node end = position;
+        for (int k = 0; k < count; k++) {
+            end = neighbourWithId(end, ids[k]);
+            if (end == null) {
+                throw new IllegalArgumentException("moveAlong: Node " + ids[k] + " (step " + k
+                        + ") must be adjacent to the node before it");
+            }
+        }
+
+        if (recorder != null || gui.isPresent()) {
+            Node n = position;
+            for (int k = 0; k < count; k++) {
+                Node next = neighbourWithId(n, ids[k]);
+                if (recorder != null) {
+                    recorder.move(n, next);
+                }
+                if (gui.isPresent()) {
+                    gui.get().moveTo(next);
+                }
+                n = next;
+            }
+        }
+        position = end;
+        stepsTaken += count;
+        if (gui.isPresent()) {
+            gui.get().updateBonus(computeBonusFactor());
+        }
+    }
+
+    @Override
+    public void moveAlong(long[] ids) {
+        moveAlong(ids, ids.length);
+    }
+
+    /**
+     * Return the neighbour of n whose id is id, or null if there is none.
+     */
+    private static Node neighbourWithId(Node n, long id) {
+        for (int i = 0; i < Node.DEGREE; i++) {
+            Node w = n.getNeighbour(i);
+            if (w != null && w.getId() == id) {
+                return w;
             }
         }
-        throw new IllegalArgumentException("moveTo: Node must be adjacent to position");
+        return null;
     }
 
     /**
@@ -254,6 +456,18 @@ public class GameState implements ExplorationState, EscapeState {
         return options;
     }
 
+    @Override
+    public int getNeighbours(long[] ids, int[] distances) {
+        if (stage != Stage.EXPLORE) {
+            throw new IllegalStateException("getNeighbours() can only be called while exploring!");
+        }
+        if (ids.length < MAX_NEIGHBOURS || distances.length < MAX_NEIGHBOURS) {
+            throw new IllegalArgumentException("getNeighbours: The arrays must have room for "
+                    + MAX_NEIGHBOURS + " neighbours");
+        }
+        return exploreCavern.getNeighbourTable().neighbours((int) position.getId(), ids, distances);
+    }
+
     private int computeDistanceToTarget(int row, int col) {
         return Math.abs(row - exploreCavern.getTarget().getTile().getRow())
                 + Math.abs(col - exploreCavern.getTarget().getTile().getColumn());
@@ -298,6 +512,33 @@ public class GameState implements ExplorationState, EscapeState {
         return Collections.unmodifiableSet(escapeCavern.getGraph());
     }
 
+    @Override
+    public CompactGraph getCompactGraph() {
+        if (stage != Stage.ESCAPE) {
+            throw new IllegalStateException("getCompactGraph: Error, " +
+                    "the graph may not be accessed unless in ESCAPE");
+        }
+        return escapeCavern.getCompactGraph();
+    }
+
+    @Override
+    public int getDistanceToExit(Node n) {
+        if (stage != Stage.ESCAPE) {
+            throw new IllegalStateException("getDistanceToExit: Error, " +
+                    "distances may not be accessed unless in ESCAPE");
+        }
+        return escapeCavern.distanceToTarget(n);
+    }
+
+    @Override
+    public List<Node> getPathToExit(Node n) {
+        if (stage != Stage.ESCAPE) {
+            throw new IllegalStateException("getPathToExit: Error, " +
+                    "paths may not be accessed unless in ESCAPE");
+        }
+        return escapeCavern.pathToTarget(n);
+    }
+
     /**
      * Attempts to move the explorer from the current position to
      * the <tt>Node</tt> <tt>n</tt>. Throws an <tt>IllegalArgumentException</tt>
@@ -311,19 +552,100 @@ public class GameState implements ExplorationState, EscapeState {
         if (stage != Stage.ESCAPE) {
             throw new IllegalStateException("moveTo(Node) can only be called when escaping!");
         }
+        // getEdge throws an IllegalArgumentException if n is not adjacent to position
         int distance = position.getEdge(n).length;
         if (timeRemaining - distance < 0) {
             throw new OutOfTimeException();
         }
 
-        if (position.getNeighbours().contains(n)) {
-            position = n;
-            timeRemaining -= distance;
-            gui.ifPresent((g) -> g.updateTimeRemaining(timeRemaining));
-            gui.ifPresent((g) -> g.moveTo(n));
-        } else {
-            throw new IllegalArgumentException("moveTo: Node must be adjacent to position");
+        if (recorder != null) {
+            recorder.move(position, n);
+        }
+        position = n;
+        timeRemaining -= distance;
+        gui.ifPresent((g) -> g.updateTimeRemaining(timeRemaining));
+        gui.ifPresent((g) -> g.moveTo(n));
+    }
+
+    /**
+     * See follow(List&lt;Node&gt; path, boolean collectGold). The GUI shows every step, and the
+     * time remaining and gold it shows are updated once, at the end.
+     */
+    @Override
+    public int follow(List<Node> path, boolean collectGold) {
+        if (stage != Stage.ESCAPE) {
+            throw new IllegalStateException("follow can only be called when escaping!");
+        }
+
+        // Check the whole path and its time before taking any of it.
+        Node n = position;
+        long time = 0;
+        int k = 0;
+        for (Node next : path) {
+            if (!next.equals(n)) {
+                int length = edgeLength(n, next);
+                if (length == 0) {
+                    throw new IllegalArgumentException("follow: Node " + next.getId() + " (at " + k
+                            + ") must be a neighbour of the node before it");
+                }
+                time += length;
+                n = next;
+            }
+            k++;
+        }
+        // Running out of time ends the escape as it does in moveTo, not as an error.
+        if (time > timeRemaining) {
+            throw new OutOfTimeException();
+        }
+
+        int gold = collectGold ? takeGoldHere() : 0;
+        for (Node next : path) {
+            if (!next.equals(position)) {
+                if (recorder != null) {
+                    recorder.move(position, next);
+                }
+                position = next;
+                if (gui.isPresent()) {
+                    gui.get().moveTo(next);
+                }
+                if (collectGold) {
+                    gold += takeGoldHere();
+                }
+            }
+        }
+        timeRemaining -= (int) time;
+        if (gui.isPresent()) {
+            gui.get().updateTimeRemaining(timeRemaining);
+            gui.get().updateCoins(goldCollected, getScore());
+        }
+        return gold;
+    }
+
+    /**
+     * Pick up the gold at position, if there is any, and return how much there was.
+     */
+    private int takeGoldHere() {
+        if (position.getTile().getGold() <= 0) {
+            return 0;
+        }
+        int gold = position.getTile().takeGold();
+        goldCollected += gold;
+        if (recorder != null) {
+            recorder.pickUp();
         }
+        return gold;
+    }
+
+    /**
+     * Return the length of the edge from n to q, or 0 if they are not neighbours.
+     */
+    private static int edgeLength(Node n, Node q) {
+        for (int i = 0; i < Node.DEGREE; i++) {
+            if (q.equals(n.getNeighbour(i))) {
+                return n.getExitLength(i);
+            }
+        }
+        return 0;
     }
 
     @Override
@@ -334,6 +656,9 @@ public class GameState implements ExplorationState, EscapeState {
             throw new IllegalStateException("pickUpGold: Error, no gold on this tile");
         }
         goldCollected += position.getTile().takeGold();
+        if (recorder != null) {
+            recorder.pickUp();
+        }
         gui.ifPresent((g) -> g.updateCoins(goldCollected, getScore()));
     }
 
@@ -375,6 +700,9 @@ public class GameState implements ExplorationState, EscapeState {
     }
 
     private void output(Optional<GUI> gui, String s) {
+        if (quiet) {
+            return;
+        }
         System.err.println(s);
         gui.ifPresent((g) -> g.displayError(s));
     }
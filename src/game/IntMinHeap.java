@@ -0,0 +1,213 @@
+package game;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * An instance is an indexed min-heap of the ints 0..capacity-1 with long priorities,
+ * such as the frontier of Dijkstra's algorithm over the nodes of a CompactGraph.
+ * <p>
+ * The heap is d-ary: the children of heap[i] are heap[d*i+1..d*i+d], so a larger d
+ * makes the heap shallower, which speeds up add and decreaseKey at some cost to poll.
+ * The heap, the position of each element in it and the priorities are all primitive
+ * arrays allocated by the constructor, so no operation allocates, and no operation
+ * looks anything up in a map. add, poll and changePriority take O(d log_d n) time;
+ * decreaseKey takes O(log_d n) time.
+ * <p>
+ * Of elements with equal priorities, any may be polled first.
+ */
+public final class IntMinHeap {
+    /** The default fan-out, which suits Dijkstra's algorithm on grid graphs. */
+    public static final int DEFAULT_ARITY = 4;
+
+    private final int arity;
+    private int size;
+    /** heap[0..size-1] holds the elements, each priority no larger than those of its children. */
+    private final int[] heap;
+    /** pos[v] is the index of v in heap, or -1 if v is not in the heap. */
+    private final int[] pos;
+    /** prio[v] is the priority of v while v is in the heap. */
+    private final long[] prio;
+
+    /**
+     * Constructor: an empty DEFAULT_ARITY-ary heap for the elements 0..capacity-1.
+     */
+    public IntMinHeap(int capacity) {
+        this(capacity, DEFAULT_ARITY);
+    }
+
+    /**
+     * Constructor: an empty arity-ary heap for the elements 0..capacity-1.
+     * Throw an IllegalArgumentException if arity is less than 2.
+     */
+    public IntMinHeap(int capacity, int arity) {
+        if (arity < 2) {
+            throw new IllegalArgumentException("IntMinHeap: arity must be at least 2");
+        }
+        this.arity = arity;
+        heap = new int[capacity];
+        pos = new int[capacity];
+        prio = new long[capacity];
+        Arrays.fill(pos, -1);
+    }
+
+    /**
+     * Return the number of elements in this heap.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Return true iff this heap is empty.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Return true iff v is in this heap.
+     */
+    public boolean contains(int v) {
+        return pos[v] >= 0;
+    }
+
+    /**
+     * Return the priority of v.
+     * Precondition: v is in this heap.
+     */
+    public long priority(int v) {
+        return prio[v];
+    }
+
+    /**
+     * Add v with priority p to this heap.
+     * Throw an IllegalArgumentException if v is already in this heap.
+     */
+    public void add(int v, long p) {
+        if (pos[v] >= 0) {
+            throw new IllegalArgumentException("Cannot insert the same element twice");
+        }
+        prio[v] = p;
+        bubbleUp(v, size++);
+    }
+
+    /**
+     * Return the element of this heap with lowest priority, without removing it.
+     * Throw a NoSuchElementException if this heap is empty.
+     */
+    public int peek() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return heap[0];
+    }
+
+    /**
+     * Remove and return the element of this heap with lowest priority.
+     * Throw a NoSuchElementException if this heap is empty.
+     */
+    public int poll() {
+        int v = peek();
+        pos[v] = -1;
+        size--;
+        if (size > 0) {
+            bubbleDown(heap[size], 0);
+        }
+        return v;
+    }
+
+    /**
+     * Lower the priority of v to p.
+     * Throw an IllegalArgumentException if v is not in this heap or p is larger than its priority.
+     */
+    public void decreaseKey(int v, long p) {
+        if (pos[v] < 0 || p > prio[v]) {
+            throw new IllegalArgumentException("decreaseKey: element must be in the heap with a larger priority");
+        }
+        prio[v] = p;
+        bubbleUp(v, pos[v]);
+    }
+
+    /**
+     * Change the priority of v to p.
+     * Throw an IllegalArgumentException if v is not in this heap.
+     */
+    public void changePriority(int v, long p) {
+        if (pos[v] < 0) {
+            throw new IllegalArgumentException("No element found: " + v);
+        }
+        long old = prio[v];
+        prio[v] = p;
+        if (p < old) {
+            bubbleUp(v, pos[v]);
+        } else {
+            bubbleDown(v, pos[v]);
+        }
+    }
+
+    /**
+     * Remove every element from this heap. This takes time proportional to its size.
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            pos[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    /**
+     * Put v at heap[k] and move it up to its right place.
+     * Precondition: every heap[i] satisfies the heap property except perhaps
+     * that prio[v] is less than the priority of the parent of heap[k].
+     */
+    private void bubbleUp(int v, int k) {
+        long p = prio[v];
+        while (k > 0) {
+            int parent = (k - 1) / arity;
+            int u = heap[parent];
+            if (prio[u] <= p) {
+                break;
+            }
+            heap[k] = u;
+            pos[u] = k;
+            k = parent;
+        }
+        heap[k] = v;
+        pos[v] = k;
+    }
+
+    /**
+     * Put v at heap[k] and move it down to its right place.
+     * Precondition: every heap[i] satisfies the heap property except perhaps
+     * that prio[v] is greater than the priority of a child of heap[k].
+     */
+    private void bubbleDown(int v, int k) {
+        long p = prio[v];
+        while (true) {
+            int first = arity * k + 1;
+            if (first >= size) {
+                break;
+            }
+            int last = Math.min(first + arity, size);
+            int child = first;
+            long childPrio = prio[heap[first]];
+            for (int c = first + 1; c < last; c++) {
+                long cp = prio[heap[c]];
+                if (cp < childPrio) {
+                    child = c;
+                    childPrio = cp;
+                }
+            }
+            if (p <= childPrio) {
+                break;
+            }
+            int u = heap[child];
+            heap[k] = u;
+            pos[u] = k;
+            k = child;
+        }
+        heap[k] = v;
+        pos[v] = k;
+    }
+}
@@ -0,0 +1,78 @@
+package game;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * An instance holds, for every open tile of a cavern, the ids of its neighbours and their
+ * distances along the grid to the target of the cavern, so that ExplorationState can report
+ * them without computing or allocating anything.
+ * <p>
+ * The neighbours of the node with id v are at positions offset(v) <= i < offset(v + 1) of
+ * the neighbour arrays, in the order in which Node.getNeighbours() iterates over them.
+ */
+/* package */ final class NeighbourTable {
+    private final int[] offsets;
+    private final int[] neighbours;
+    private final int[] distances;
+
+    /**
+     * Constructor: the table of cavern.
+     */
+    /* package */ NeighbourTable(Cavern cavern) {
+        int n = cavern.numOpenTiles();
+        Tile target = cavern.getTarget().getTile();
+        int degrees = 0;
+        for (int r = 0; r < cavern.getRowCount(); r++) {
+            for (int c = 0; c < cavern.getColumnCount(); c++) {
+                degrees += cavern.getNodeAt(r, c).degree();
+            }
+        }
+        offsets = new int[n + 1];
+        neighbours = new int[degrees];
+        distances = new int[degrees];
+
+        // A set like the one getNeighbours() returns, cleared and refilled for each node so that
+        // its iteration order is the same without keeping a set for every node.
+        Set<Node> scratch = new HashSet<>();
+        int i = 0;
+        for (int r = 0; r < cavern.getRowCount(); r++) {
+            for (int c = 0; c < cavern.getColumnCount(); c++) {
+                Node node = cavern.getNodeAt(r, c);
+                if (!node.getTile().getType().isOpen()) {
+                    continue;
+                }
+                scratch.clear();
+                for (int d = 0; d < Node.DEGREE; d++) {
+                    Node w = node.getNeighbour(d);
+                    if (w != null) {
+                        scratch.add(w);
+                    }
+                }
+                offsets[(int) node.getId()] = i;
+                for (Node w : scratch) {
+                    neighbours[i] = (int) w.getId();
+                    distances[i] = Math.abs(w.getTile().getRow() - target.getRow())
+                            + Math.abs(w.getTile().getColumn() - target.getColumn());
+                    i++;
+                }
+            }
+        }
+        offsets[n] = i;
+    }
+
+    /**
+     * Store the ids of the neighbours of the node with id v in ids and their distances to
+     * the target in distances, and return how many there are.
+     * Precondition: both arrays have room for Node.DEGREE elements.
+     */
+    /* package */ int neighbours(int v, long[] ids, int[] distances) {
+        int start = offsets[v];
+        int count = offsets[v + 1] - start;
+        for (int k = 0; k < count; k++) {
+            ids[k] = neighbours[start + k];
+            distances[k] = this.distances[start + k];
+        }
+        return count;
+    }
+}
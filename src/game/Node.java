@@ -2,7 +2,6 @@ package game;
 
 import java.util.Collections;
 import java.util.HashSet;
-import java.util.Objects;
 import java.util.Set;
 
 /**
@@ -10,87 +9,170 @@ import java.util.Set;
  */
 public class Node {
     /**
-     * The least positive fresh identifier available
+     * The number of slots for edges: one for each grid direction.
      */
-    private static long FRESH_ID = 0;
+    public static final int DEGREE = Cavern.Direction.values().length;
+    private static final Cavern.Direction[] DIRECTIONS = Cavern.Direction.values();
 
     /**
-     * The unique numerical identifier of this Node
+     * The numerical identifier of this Node, unique within its cavern.
+     * Open tiles of a cavern have the dense ids 0..n-1.
      */
     private final long id;
     /**
-     * Represents the edges outgoing from this Node
+     * The edges of the cavern, which this Node shares with its neighbours.
+     * Edges leaving this Node are views created from it on demand.
      */
-    private final Set<Edge> edges;
-    private final Set<Node> neighbours;
+    private final EdgeStore edges;
 
-    private final Set<Edge> unmodifiableEdges;
-    private final Set<Node> unmodifiableNeighbours;
+    /**
+     * Set views of the exits and neighbours, derived from exits on first use.
+     */
+    private volatile Set<Edge> unmodifiableEdges;
+    private volatile Set<Node> unmodifiableNeighbours;
 
     /**
      * Extra state that belongs to this node
      */
     private final Tile tile;
 
-    /* package */ Node(Tile t) {
-        this(FRESH_ID, t);
+    /**
+     * Constructor: an instance with id givenId and tile t whose edges are kept in e.
+     */
+    /* package */ Node(long givenId, Tile t, EdgeStore e) {
+        id = givenId;
+        tile = t;
+        edges = e;
     }
 
     /**
-     * Constructor: an instance with id givenId and tile t
+     * Return the identifier of this Node, which is unique within its cavern.
+     * The open tiles of a cavern have the dense ids 0..n-1, where n is the
+     * number of open tiles, so an id can be used directly as an array index.
      */
-    /* package */ Node(long givenId, Tile t) {
-        id = givenId;
-        FRESH_ID = Math.max(FRESH_ID, givenId + 1);
-        edges = new HashSet<>();
-        neighbours = new HashSet<>();
+    public long getId() {
+        return id;
+    }
 
-        unmodifiableEdges = Collections.unmodifiableSet(edges);
-        unmodifiableNeighbours = Collections.unmodifiableSet(neighbours);
+    /**
+     * Returns the Edge of this Node that connects to q. This takes constant time.
+     * Throw an IllegalArgumentException if there is no such edge.
+     */
+    public Edge getEdge(Node q) {
+        int len = edges.length(this, q);
+        if (len > 0 && q.equals(edges.neighbour(tile.getRow(), tile.getColumn(), directionTo(q)))) {
+            return new Edge(this, q, len);
+        }
+        throw new IllegalArgumentException("getEdge: Node must be a neighbour of this Node");
+    }
 
-        tile = t;
+    /**
+     * Return the Edge leaving this Node in direction d, or null if there is none.
+     */
+    public Edge getExit(Cavern.Direction d) {
+        Node q = getNeighbour(d);
+        return q == null ? null : new Edge(this, q, edges.length(tile.getRow(), tile.getColumn(), d));
     }
 
     /**
-     * Add edge e to the graph.
+     * Return the Edge in slot i of this Node (the slot of direction d is d.ordinal()),
+     * or null if there is none. Looping over the slots 0..DEGREE-1 visits every exit.
      */
-    /* package */ void addEdge(Edge e) {
-        edges.add(e);
-        neighbours.add(e.getOther(this));
+    public Edge getExit(int i) {
+        return getExit(DIRECTIONS[i]);
     }
 
     /**
-     * Return the unique Identifier of this Node.
+     * Return the Node neighbouring this Node in direction d, or null if there is none.
      */
-    public long getId() {
-        return id;
+    public Node getNeighbour(Cavern.Direction d) {
+        return edges.neighbour(tile.getRow(), tile.getColumn(), d);
     }
 
     /**
-     * Returns the Edge of this Node that connects to q.
-     * .     * Throw an IllegalArgumentException if there is no such edge.
+     * Return the Node in slot i of this Node (see getExit(int)), or null if there is none.
+     * Unlike getExit(int), this does not create an Edge.
      */
-    public Edge getEdge(Node q) {
-        for (Edge e : edges) {
-            if (e.getDest().equals(q)) {
-                return e;
+    public Node getNeighbour(int i) {
+        return getNeighbour(DIRECTIONS[i]);
+    }
+
+    /**
+     * Return the length of the Edge in slot i of this Node (see getExit(int)),
+     * or 0 if there is none. Unlike getExit(int), this does not create an Edge.
+     */
+    public int getExitLength(int i) {
+        return edges.length(tile.getRow(), tile.getColumn(), DIRECTIONS[i]);
+    }
+
+    /**
+     * Return true iff q is a neighbour of this Node. This takes constant time.
+     */
+    public boolean isNeighbour(Node q) {
+        return edges.length(this, q) > 0
+                && q.equals(edges.neighbour(tile.getRow(), tile.getColumn(), directionTo(q)));
+    }
+
+    /**
+     * Return the direction from this Node to q.
+     * Precondition: q is adjacent to this Node on the grid.
+     */
+    private Cavern.Direction directionTo(Node q) {
+        int dRow = q.tile.getRow() - tile.getRow();
+        if (dRow < 0) return Cavern.Direction.NORTH;
+        if (dRow > 0) return Cavern.Direction.SOUTH;
+        return q.tile.getColumn() > tile.getColumn() ? Cavern.Direction.EAST : Cavern.Direction.WEST;
+    }
+
+    /**
+     * Return the number of Edges leaving this Node.
+     */
+    public int degree() {
+        int degree = 0;
+        for (Cavern.Direction d : DIRECTIONS) {
+            if (edges.length(tile.getRow(), tile.getColumn(), d) > 0) {
+                degree++;
             }
         }
-        throw new IllegalArgumentException("getEdge: Node must be a neighbour of this Node");
+        return degree;
     }
 
     /**
      * Return an unmodifiable set of Edges leaving this Node.
      */
     public Set<Edge> getExits() {
-        return unmodifiableEdges;
+        Set<Edge> result = unmodifiableEdges;
+        if (result == null) {
+            Set<Edge> exits = new HashSet<>();
+            for (Cavern.Direction d : DIRECTIONS) {
+                Edge e = getExit(d);
+                if (e != null) {
+                    exits.add(e);
+                }
+            }
+            result = Collections.unmodifiableSet(exits);
+            unmodifiableEdges = result;
+        }
+        return result;
     }
 
     /**
      * Return an unmodifiable set Nodes neighbouring this Node.
      */
     public Set<Node> getNeighbours() {
-        return unmodifiableNeighbours;
+        Set<Node> result = unmodifiableNeighbours;
+        if (result == null) {
+            Set<Node> neighbours = new HashSet<>();
+            for (Cavern.Direction d : DIRECTIONS) {
+                Node q = getNeighbour(d);
+                if (q != null) {
+                    neighbours.add(q);
+                }
+            }
+            result = Collections.unmodifiableSet(neighbours);
+            unmodifiableNeighbours = result;
+        }
+        return result;
     }
 
     /**
@@ -119,6 +201,6 @@ public class Node {
      */
     @Override
     public int hashCode() {
-        return Objects.hash(id);
+        return Long.hashCode(id);
     }
 }
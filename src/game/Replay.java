@@ -0,0 +1,281 @@
+package game;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * A compact record of a game: its seed, checksums of its two caverns and every move and
+ * pickup of gold the explorer made. GameState.replay plays the game again from it without
+ * running the explorer's code, so a game can be re-rendered, re-scored or compared with
+ * another cheaply.
+ * <p>
+ * A move is stored as the ordinal of the Cavern.Direction it was made in, in 2 bits.
+ * The binary form consists of, in order:
+ * <ul>
+ * <li>the magic number "CAVR" and a version byte,
+ * <li>the seed as an 8-byte big-endian long, and the checksums (see Cavern.checksum()) of the
+ * explore cavern and of the escape cavern as 4-byte big-endian ints,
+ * <li>the number of moves made while exploring and while escaping as varints (see BinaryCavernFormat),
+ * <li>the explore moves followed by the escape moves, packed 4 per byte, first move in the low bits,
+ * <li>one pickup flag more than there are escape moves, packed 8 per byte, first flag in the low bit:
+ * flag i is set iff gold was picked up after the i-th escape move (flag 0: where the escape starts),
+ * <li>the CRC32 of everything before it, as a 4-byte big-endian int.
+ * </ul>
+ */
+public final class Replay {
+    private static final int MAGIC = 0x43415652;
+    private static final int VERSION = 1;
+    private static final Cavern.Direction[] DIRECTIONS = Cavern.Direction.values();
+
+    private final long seed;
+    private final int exploreChecksum;
+    private final int escapeChecksum;
+    private final int exploreMoves;
+    private final int escapeMoves;
+    /** The explore moves followed by the escape moves, 4 per byte. */
+    private final byte[] moves;
+    /** The escapeMoves + 1 pickup flags, 8 per byte. */
+    private final byte[] pickups;
+
+    private Replay(long seed, int exploreChecksum, int escapeChecksum, int exploreMoves, int escapeMoves,
+                   byte[] moves, byte[] pickups) {
+        this.seed = seed;
+        this.exploreChecksum = exploreChecksum;
+        this.escapeChecksum = escapeChecksum;
+        this.exploreMoves = exploreMoves;
+        this.escapeMoves = escapeMoves;
+        this.moves = moves;
+        this.pickups = pickups;
+    }
+
+    /**
+     * Return the seed of the game (-1 if its caverns were loaded from files).
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Return the checksum of the explore cavern the game was played on.
+     */
+    public int getExploreChecksum() {
+        return exploreChecksum;
+    }
+
+    /**
+     * Return the checksum of the escape cavern the game was played on, before any gold was picked up.
+     */
+    public int getEscapeChecksum() {
+        return escapeChecksum;
+    }
+
+    /**
+     * Return the number of moves made while exploring.
+     */
+    public int getExploreMoves() {
+        return exploreMoves;
+    }
+
+    /**
+     * Return the number of moves made while escaping.
+     */
+    public int getEscapeMoves() {
+        return escapeMoves;
+    }
+
+    /**
+     * Return the direction of the i-th explore move, 0 <= i < getExploreMoves().
+     */
+    public Cavern.Direction getExploreMove(int i) {
+        if (i < 0 || i >= exploreMoves) {
+            throw new IndexOutOfBoundsException("getExploreMove: " + i);
+        }
+        return move(i);
+    }
+
+    /**
+     * Return the direction of the i-th escape move, 0 <= i < getEscapeMoves().
+     */
+    public Cavern.Direction getEscapeMove(int i) {
+        if (i < 0 || i >= escapeMoves) {
+            throw new IndexOutOfBoundsException("getEscapeMove: " + i);
+        }
+        return move(exploreMoves + i);
+    }
+
+    /**
+     * Return true iff gold was picked up after i escape moves, 0 <= i <= getEscapeMoves().
+     */
+    public boolean pickedUpAfter(int i) {
+        if (i < 0 || i > escapeMoves) {
+            throw new IndexOutOfBoundsException("pickedUpAfter: " + i);
+        }
+        return (pickups[i >>> 3] >>> (i & 7) & 1) != 0;
+    }
+
+    /**
+     * Return true iff caverns are the ones this game was played on. The gold of the escape
+     * cavern must not have been picked up.
+     */
+    public boolean matches(CavernFactory.Caverns caverns) {
+        return caverns.getExploreCavern().checksum() == exploreChecksum
+                && caverns.getEscapeCavern().checksum() == escapeChecksum;
+    }
+
+    private Cavern.Direction move(int k) {
+        return DIRECTIONS[moves[k >>> 2] >>> (2 * (k & 3)) & 3];
+    }
+
+    /**
+     * Return the binary encoding of this replay.
+     */
+    public byte[] encode() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(moves.length + pickups.length + 32);
+        ByteBuffer header = ByteBuffer.allocate(21);
+        header.putInt(MAGIC).put((byte) VERSION).putLong(seed).putInt(exploreChecksum).putInt(escapeChecksum);
+        out.write(header.array(), 0, header.capacity());
+        BinaryCavernFormat.writeVarint(out, exploreMoves);
+        BinaryCavernFormat.writeVarint(out, escapeMoves);
+        out.write(moves, 0, moves.length);
+        out.write(pickups, 0, pickups.length);
+        byte[] body = out.toByteArray();
+        int checksum = BinaryCavernFormat.crc(ByteBuffer.wrap(body), body.length);
+        byte[] encoded = Arrays.copyOf(body, body.length + 4);
+        ByteBuffer.wrap(encoded).putInt(body.length, checksum);
+        return encoded;
+    }
+
+    /**
+     * Decode the replay in buf, from its position to its limit, and return it.
+     * Throw an IllegalArgumentException if buf does not hold a valid replay.
+     */
+    public static Replay decode(ByteBuffer buf) {
+        ByteBuffer in = buf.slice();
+        if (in.remaining() < 27 || in.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("decode: Not a replay");
+        }
+        int end = in.limit() - 4;
+        if (in.getInt(end) != BinaryCavernFormat.crc(in.duplicate(), end)) {
+            throw new IllegalArgumentException("decode: Checksum mismatch");
+        }
+        in.limit(end);
+        in.position(4);
+        int version = in.get();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("decode: Unsupported version " + version);
+        }
+
+        try {
+            long seed = in.getLong();
+            int exploreChecksum = in.getInt();
+            int escapeChecksum = in.getInt();
+            int exploreMoves = BinaryCavernFormat.readVarint(in);
+            int escapeMoves = BinaryCavernFormat.readVarint(in);
+            long total = (long) exploreMoves + escapeMoves;
+            if (total > Integer.MAX_VALUE - 3 || in.remaining() != (total + 3) / 4 + (escapeMoves + 8L) / 8) {
+                throw new IllegalArgumentException("decode: Bad length");
+            }
+            byte[] moves = new byte[(int) ((total + 3) / 4)];
+            byte[] pickups = new byte[(escapeMoves >>> 3) + 1];
+            in.get(moves);
+            in.get(pickups);
+            return new Replay(seed, exploreChecksum, escapeChecksum, exploreMoves, escapeMoves, moves, pickups);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("decode: Truncated replay");
+        }
+    }
+
+    /**
+     * Write the binary encoding of this replay to the file at path.
+     */
+    public void save(Path path) throws IOException {
+        Files.write(path, encode());
+    }
+
+    /**
+     * Load the replay in the file at path and return it.
+     * Throw an IllegalArgumentException if the file does not hold a valid replay.
+     */
+    public static Replay load(Path path) throws IOException {
+        return decode(ByteBuffer.wrap(Files.readAllBytes(path)));
+    }
+
+    @Override
+    public String toString() {
+        return "Replay[seed " + seed + ", " + exploreMoves + " explore moves, " + escapeMoves + " escape moves]";
+    }
+
+    /**
+     * Records the moves and pickups of a game as it is played.
+     */
+    /* package */ static final class Recorder {
+        private final long seed;
+        private final int exploreChecksum;
+        private final int escapeChecksum;
+        private byte[] moves = new byte[64];
+        private int moveCount;
+        /** The number of explore moves, or -1 until the escape starts. */
+        private int exploreMoves = -1;
+        private byte[] pickups = new byte[16];
+
+        /**
+         * Constructor: a recorder for a game for seed on explore and escape, none of whose
+         * gold has been picked up.
+         */
+        /* package */ Recorder(long seed, Cavern explore, Cavern escape) {
+            this.seed = seed;
+            exploreChecksum = explore.checksum();
+            escapeChecksum = escape.checksum();
+        }
+
+        /**
+         * Record a move from to its neighbour to.
+         */
+        /* package */ void move(Node from, Node to) {
+            int dr = to.getTile().getRow() - from.getTile().getRow();
+            int dc = to.getTile().getColumn() - from.getTile().getColumn();
+            int code = 0;
+            while (DIRECTIONS[code].getRowOffset() != dr || DIRECTIONS[code].getColumnOffset() != dc) {
+                code++;
+            }
+            if (moveCount >>> 2 == moves.length) {
+                moves = Arrays.copyOf(moves, moves.length * 2);
+            }
+            moves[moveCount >>> 2] |= code << (2 * (moveCount & 3));
+            moveCount++;
+        }
+
+        /**
+         * Record that the escape starts: later moves are escape moves.
+         */
+        /* package */ void startEscape() {
+            exploreMoves = moveCount;
+        }
+
+        /**
+         * Record that gold was picked up where the explorer is.
+         */
+        /* package */ void pickUp() {
+            int i = moveCount - exploreMoves;
+            if (i >>> 3 >= pickups.length) {
+                pickups = Arrays.copyOf(pickups, Math.max(pickups.length * 2, (i >>> 3) + 1));
+            }
+            pickups[i >>> 3] |= 1 << (i & 7);
+        }
+
+        /**
+         * Return the replay of what has been recorded so far.
+         */
+        /* package */ Replay toReplay() {
+            int explore = exploreMoves < 0 ? moveCount : exploreMoves;
+            int escape = moveCount - explore;
+            return new Replay(seed, exploreChecksum, escapeChecksum, explore, escape,
+                    Arrays.copyOf(moves, (moveCount + 3) / 4), Arrays.copyOf(pickups, (escape >>> 3) + 1));
+        }
+    }
+}
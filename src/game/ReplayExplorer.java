@@ -0,0 +1,63 @@
+package game;
+
+import student.Explorer;
+
+/**
+ * An explorer that makes the moves and pickups of a Replay instead of deciding them.
+ * Its moves go through the same checks as those of any explorer, so a replay that does not
+ * fit the caverns fails the way a faulty explorer would.
+ */
+/* package */ final class ReplayExplorer extends Explorer {
+    private final Replay replay;
+    private final Node entrance;
+
+    /**
+     * Constructor: an explorer that replays replay, entering the explore cavern at entrance.
+     */
+    /* package */ ReplayExplorer(Replay replay, Node entrance) {
+        this.replay = replay;
+        this.entrance = entrance;
+    }
+
+    /**
+     * Make all the explore moves in one call to moveAlong.
+     */
+    @Override
+    public void explore(ExplorationState state) {
+        long[] ids = new long[replay.getExploreMoves()];
+        Node position = entrance;
+        for (int i = 0; i < ids.length; i++) {
+            position = neighbour(position, replay.getExploreMove(i));
+            ids[i] = position.getId();
+        }
+        state.moveAlong(ids);
+    }
+
+    @Override
+    public void escape(EscapeState state) {
+        Node position = state.getCurrentNode();
+        if (replay.pickedUpAfter(0)) {
+            state.pickUpGold();
+        }
+        for (int i = 0; i < replay.getEscapeMoves(); i++) {
+            position = neighbour(position, replay.getEscapeMove(i));
+            state.moveTo(position);
+            if (replay.pickedUpAfter(i + 1)) {
+                state.pickUpGold();
+            }
+        }
+    }
+
+    /**
+     * Return the neighbour of n in direction d.
+     * Throw an IllegalArgumentException if there is none.
+     */
+    private static Node neighbour(Node n, Cavern.Direction d) {
+        Node next = n.getNeighbour(d);
+        if (next == null) {
+            throw new IllegalArgumentException("replay: No exit " + d + " from " + n.getTile().getRow()
+                    + ", " + n.getTile().getColumn());
+        }
+        return next;
+    }
+}
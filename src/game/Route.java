@@ -0,0 +1,60 @@
+package game;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An instance is the result of a point-to-point shortest-path query on a cavern:
+ * the length of a shortest path and the nodes along it, from the start to the end.
+ * If there is no path, the length is -1 and the list of nodes is empty.
+ */
+public final class Route {
+    private final int length;
+    private final List<Node> nodes;
+    private final int settled;
+
+    /**
+     * Constructor: a route of the given length through nodes, found by a search that
+     * settled the given number of nodes.
+     */
+    /* package */ Route(int length, List<Node> nodes, int settled) {
+        this.length = length;
+        this.nodes = Collections.unmodifiableList(nodes);
+        this.settled = settled;
+    }
+
+    /**
+     * Return the length of this route, or -1 if there is no path.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Return the nodes of this route, from its start to its end (both included).
+     * The list is unmodifiable, and empty if there is no path.
+     */
+    public List<Node> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Return true iff there is a path.
+     */
+    public boolean exists() {
+        return length >= 0;
+    }
+
+    /**
+     * Return the number of nodes the search settled to find this route,
+     * a measure of the work it took.
+     */
+    public int getSettledCount() {
+        return settled;
+    }
+
+    @Override
+    public String toString() {
+        return "Route(length " + length + ", " + nodes.size() + " nodes)";
+    }
+}
@@ -0,0 +1,173 @@
+package game;
+
+import java.util.Arrays;
+
+/**
+ * Single-source shortest paths over a CompactGraph, for the game and for solvers.
+ * <p>
+ * Edge lengths in a cavern are small positive integers (1..Cavern.MAX_EDGE_WEIGHT, and
+ * always 1 in explore caverns), so no general-purpose heap is needed. If every edge has
+ * length 1 the search is a breadth-first search. Otherwise it is Dijkstra's algorithm with a
+ * circular bucket queue (Dial's algorithm): with edges of length at most C, every tentative
+ * distance in the queue lies within C of the current one, so C + 1 buckets, reused in a
+ * circle, hold the whole frontier. A bucket is a doubly linked list threaded through int
+ * arrays, so moving a node to a nearer bucket takes constant time and nothing is allocated
+ * per node or edge. A search takes O(V + E + D) time, where D is the largest distance found.
+ * <p>
+ * Distances are -1 for nodes that cannot be reached, and predecessors are -1 for the source
+ * and for nodes that cannot be reached.
+ */
+public final class ShortestPaths {
+
+    private ShortestPaths() {
+    }
+
+    /**
+     * Return the array of the distances from source to every node of g.
+     */
+    public static int[] distancesFrom(CompactGraph g, int source) {
+        int[] distance = new int[g.size()];
+        search(g, source, -1, distance, null);
+        return distance;
+    }
+
+    /**
+     * Store the distance from source to every node v of g in distance[v], and the node before v
+     * on a shortest path from source in predecessor[v] (if predecessor is not null).
+     * Since edges are symmetric, the path from v to source follows predecessor from v.
+     * Precondition: distance and predecessor (if not null) have length at least g.size().
+     */
+    public static void distancesFrom(CompactGraph g, int source, int[] distance, int[] predecessor) {
+        search(g, source, -1, distance, predecessor);
+    }
+
+    /**
+     * Return the length of a shortest path from source to target in g, or -1 if there is none.
+     * The search stops as soon as the distance to target is known.
+     */
+    public static int distance(CompactGraph g, int source, int target) {
+        int[] distance = new int[g.size()];
+        search(g, source, target, distance, null);
+        return distance[target];
+    }
+
+    /**
+     * Search g from source until target is settled (or every node, if target is -1), storing
+     * distances in distance and, if predecessor is not null, predecessors in predecessor.
+     */
+    private static void search(CompactGraph g, int source, int target, int[] distance, int[] predecessor) {
+        Arrays.fill(distance, 0, g.size(), -1);
+        if (predecessor != null) {
+            Arrays.fill(predecessor, 0, g.size(), -1);
+        }
+        if (g.maxWeight() <= 1) {
+            breadthFirst(g, source, target, distance, predecessor);
+        } else {
+            dial(g, source, target, distance, predecessor);
+        }
+    }
+
+    /**
+     * Breadth-first search of g from source, for graphs whose edges all have length 1.
+     * Precondition: distance (and predecessor, if not null) is filled with -1.
+     */
+    private static void breadthFirst(CompactGraph g, int source, int target, int[] distance, int[] predecessor) {
+        int[] queue = new int[g.size()];
+        int head = 0;
+        int tail = 0;
+        distance[source] = 0;
+        queue[tail++] = source;
+        while (head < tail) {
+            int v = queue[head++];
+            if (v == target) {
+                return;
+            }
+            int d = distance[v] + 1;
+            for (int i = g.neighbourStart(v); i < g.neighbourEnd(v); i++) {
+                int w = g.neighbour(i);
+                if (distance[w] < 0) {
+                    distance[w] = d;
+                    if (predecessor != null) {
+                        predecessor[w] = v;
+                    }
+                    queue[tail++] = w;
+                }
+            }
+        }
+    }
+
+    /**
+     * Dijkstra's algorithm on g from source with a circular bucket queue.
+     * Precondition: distance (and predecessor, if not null) is filled with -1.
+     */
+    private static void dial(CompactGraph g, int source, int target, int[] distance, int[] predecessor) {
+        int n = g.size();
+        int buckets = g.maxWeight() + 1;
+        // first[b] is the first node in bucket b; next and prev link the nodes of a bucket.
+        int[] first = new int[buckets];
+        int[] next = new int[n];
+        int[] prev = new int[n];
+        Arrays.fill(first, -1);
+
+        distance[source] = 0;
+        link(source, 0, first, next, prev);
+        int queued = 1;
+        int d = 0;
+        /// invariant: as in lecture notes, with the frontier in the buckets
+        while (queued > 0) {
+            while (first[d % buckets] < 0) {
+                d++;
+            }
+            int v = first[d % buckets];
+            unlink(v, d % buckets, first, next, prev);
+            queued--;
+            if (v == target) {
+                return;
+            }
+
+            for (int i = g.neighbourStart(v); i < g.neighbourEnd(v); i++) {
+                int w = g.neighbour(i);
+                int dw = d + g.weight(i);
+                if (distance[w] < 0) {
+                    queued++;
+                } else if (dw < distance[w]) {
+                    unlink(w, distance[w] % buckets, first, next, prev);
+                } else {
+                    continue;
+                }
+                distance[w] = dw;
+                if (predecessor != null) {
+                    predecessor[w] = v;
+                }
+                link(w, dw % buckets, first, next, prev);
+            }
+        }
+    }
+
+    /**
+     * Add node v to the front of bucket b.
+     */
+    private static void link(int v, int b, int[] first, int[] next, int[] prev) {
+        next[v] = first[b];
+        prev[v] = -1;
+        if (first[b] >= 0) {
+            prev[first[b]] = v;
+        }
+        first[b] = v;
+    }
+
+    /**
+     * Remove node v from bucket b.
+     * Precondition: v is in bucket b.
+     */
+    private static void unlink(int v, int b, int[] first, int[] next, int[] prev) {
+        if (prev[v] >= 0) {
+            next[prev[v]] = next[v];
+        } else {
+            first[b] = next[v];
+        }
+        if (next[v] >= 0) {
+            prev[next[v]] = prev[v];
+        }
+    }
+}
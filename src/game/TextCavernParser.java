@@ -0,0 +1,367 @@
+package game;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * A parser for the text format of Cavern.serialize() that reads the characters of the
+ * text straight from a buffer, such as a memory-mapped file, in a single pass.
+ * <p>
+ * Nodes are parsed into parallel primitive arrays, and edges into arrays of
+ * (node, other file id, length). Edges may refer to nodes that come later in the text,
+ * so they are resolved only once every node has been read, through an array indexed by file id.
+ * <p>
+ * In parallel mode the node lines are split into chunks at line breaks, the chunks are
+ * parsed on the common ForkJoin pool, and their arrays are concatenated in order.
+ */
+/* package */ final class TextCavernParser {
+    private static final Tile.Type[] TYPES = Tile.Type.values();
+    private static final byte[][] TYPE_NAMES = new byte[TYPES.length][];
+
+    static {
+        for (Tile.Type t : TYPES) {
+            TYPE_NAMES[t.ordinal()] = t.name().getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    /**
+     * The smallest number of bytes of node lines per chunk in parallel mode.
+     */
+    private static final int MIN_CHUNK = 1 << 20;
+
+    private TextCavernParser() {
+    }
+
+    /**
+     * Parse the text in buf, from its position to its limit, and return the cavern it describes.
+     * If parallel is true, texts of more than a few megabytes are parsed in chunks on several threads.
+     * Throw an IllegalArgumentException if the text is not of the format of Cavern.serialize().
+     */
+    /* package */ static Cavern parse(ByteBuffer buf, boolean parallel) {
+        ByteBuffer text = buf.slice();
+        int end = text.limit();
+
+        // The header: rows:cols,trgt:id
+        Chunk header = new Chunk(text, 0, end);
+        int rows = (int) header.readNumber();
+        header.expect(':');
+        int cols = (int) header.readNumber();
+        header.expect(',');
+        header.skipPast(':');
+        long targetId = header.readNumber();
+        header.endLine();
+        if (rows < 1 || cols < 1) {
+            throw new IllegalArgumentException("deserialize: Bad dimensions " + rows + ":" + cols);
+        }
+
+        int start = header.pos;
+        int chunks = parallel ? Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() * 4,
+                (end - start) / MIN_CHUNK)) : 1;
+        int[] bounds = new int[chunks + 1];
+        bounds[0] = start;
+        for (int i = 1; i < chunks; i++) {
+            int approx = start + (int) ((long) (end - start) * i / chunks);
+            bounds[i] = lineStart(text, Math.max(bounds[i - 1], approx), end);
+        }
+        bounds[chunks] = end;
+
+        Chunk[] parts = new Chunk[chunks];
+        IntStream range = IntStream.range(0, chunks);
+        (chunks > 1 ? range.parallel() : range).forEach((i) -> {
+            Chunk c = new Chunk(text, bounds[i], bounds[i + 1]);
+            c.parseNodes();
+            parts[i] = c;
+        });
+        return build(rows, cols, targetId, Chunk.concat(parts));
+    }
+
+    /**
+     * Return the position of the first line that starts at or after pos in text[..end).
+     */
+    private static int lineStart(ByteBuffer text, int pos, int end) {
+        if (pos > 0 && text.get(pos - 1) == '\n') {
+            return pos;
+        }
+        while (pos < end && text.get(pos) != '\n') {
+            pos++;
+        }
+        return Math.min(pos + 1, end);
+    }
+
+    /**
+     * Return the cavern of size (rows, cols) with target targetId made of the parsed nodes and edges in c.
+     */
+    private static Cavern build(int rows, int cols, long targetId, Chunk c) {
+        // The ids in the file are only used to resolve edges; nodes get fresh dense ids on loading.
+        int count = c.nodes;
+        Tile[][] grid = new Tile[rows][cols];
+        long maxId = -1;
+        for (int k = 0; k < count; k++) {
+            if (c.row[k] < 0 || c.row[k] >= rows || c.col[k] < 0 || c.col[k] >= cols) {
+                throw new IllegalArgumentException("deserialize: Node " + c.ids[k] + " is outside the grid");
+            }
+            grid[c.row[k]][c.col[k]] = new Tile(c.row[k], c.col[k], c.gold[k], TYPES[c.type[k]]);
+            maxId = Math.max(maxId, c.ids[k]);
+        }
+
+        EdgeStore edges = new EdgeStore(rows, cols);
+        Node[][] tiles = Cavern.createNodes(grid, edges);
+
+        // Index the nodes by file id. Files written by serialize() use dense ids, so
+        // the id is the index; older files with sparse ids are indexed by rank instead.
+        long[] sortedIds = null;
+        if (maxId >= count) {
+            sortedIds = Arrays.copyOf(c.ids, count);
+            Arrays.sort(sortedIds);
+        }
+        Node[] idToNode = new Node[count];
+        for (int k = 0; k < count; k++) {
+            idToNode[fileIndex(c.ids[k], sortedIds, count)] = tiles[c.row[k]][c.col[k]];
+        }
+
+        // An edge listed from both ends is simply connected twice.
+        for (int i = 0; i < c.edges; i++) {
+            int k = c.edgeFrom[i];
+            Node other = idToNode[fileIndex(c.edgeTo[i], sortedIds, count)];
+            edges.connect(tiles[c.row[k]][c.col[k]], other, c.edgeLength[i]);
+        }
+        return Cavern.fromNodes(tiles, idToNode[fileIndex(targetId, sortedIds, count)]);
+    }
+
+    /**
+     * Return the index of file id in the table of nodes being parsed:
+     * the id itself if sortedIds is null, and its rank in sortedIds otherwise.
+     * Throw an IllegalArgumentException if none of the count nodes has that id.
+     */
+    private static int fileIndex(long id, long[] sortedIds, int count) {
+        long k = sortedIds == null ? id : Arrays.binarySearch(sortedIds, id);
+        if (k < 0 || k >= count) {
+            throw new IllegalArgumentException("deserialize: No node has id " + id);
+        }
+        return (int) k;
+    }
+
+    /**
+     * An instance parses the lines in text[pos..end) and holds what it parsed.
+     */
+    private static final class Chunk {
+        private final ByteBuffer text;
+        private int pos;
+        private final int end;
+
+        private int nodes;
+        private long[] ids = new long[16];
+        private int[] row = new int[16];
+        private int[] col = new int[16];
+        private int[] gold = new int[16];
+        private byte[] type = new byte[16];
+
+        private int edges;
+        private int[] edgeFrom = new int[16];
+        private long[] edgeTo = new long[16];
+        private int[] edgeLength = new int[16];
+
+        /**
+         * Constructor: an instance that parses text[from..to).
+         */
+        private Chunk(ByteBuffer text, int from, int to) {
+            this.text = text;
+            pos = from;
+            end = to;
+        }
+
+        /**
+         * Return the parsed nodes and edges of parts, in order, as one instance.
+         */
+        private static Chunk concat(Chunk[] parts) {
+            if (parts.length == 1) {
+                return parts[0];
+            }
+            Chunk all = new Chunk(null, 0, 0);
+            int n = 0;
+            int m = 0;
+            for (Chunk p : parts) {
+                n += p.nodes;
+                m += p.edges;
+            }
+            all.ids = new long[n];
+            all.row = new int[n];
+            all.col = new int[n];
+            all.gold = new int[n];
+            all.type = new byte[n];
+            all.edgeFrom = new int[m];
+            all.edgeTo = new long[m];
+            all.edgeLength = new int[m];
+            for (Chunk p : parts) {
+                System.arraycopy(p.ids, 0, all.ids, all.nodes, p.nodes);
+                System.arraycopy(p.row, 0, all.row, all.nodes, p.nodes);
+                System.arraycopy(p.col, 0, all.col, all.nodes, p.nodes);
+                System.arraycopy(p.gold, 0, all.gold, all.nodes, p.nodes);
+                System.arraycopy(p.type, 0, all.type, all.nodes, p.nodes);
+                for (int i = 0; i < p.edges; i++) {
+                    all.edgeFrom[all.edges + i] = p.edgeFrom[i] + all.nodes;
+                }
+                System.arraycopy(p.edgeTo, 0, all.edgeTo, all.edges, p.edges);
+                System.arraycopy(p.edgeLength, 0, all.edgeLength, all.edges, p.edges);
+                all.nodes += p.nodes;
+                all.edges += p.edges;
+            }
+            return all;
+        }
+
+        /**
+         * Parse every node line of this chunk: id,row,col,gold,TYPE=id-length,id-length,...
+         * Blank lines are skipped.
+         */
+        private void parseNodes() {
+            while (pos < end) {
+                byte b = text.get(pos);
+                if (b == '\n' || b == '\r') {
+                    pos++;
+                    continue;
+                }
+                if (nodes == ids.length) {
+                    int n = 2 * nodes;
+                    ids = Arrays.copyOf(ids, n);
+                    row = Arrays.copyOf(row, n);
+                    col = Arrays.copyOf(col, n);
+                    gold = Arrays.copyOf(gold, n);
+                    type = Arrays.copyOf(type, n);
+                }
+                ids[nodes] = readNumber();
+                expect(',');
+                row[nodes] = (int) readNumber();
+                expect(',');
+                col[nodes] = (int) readNumber();
+                expect(',');
+                gold[nodes] = (int) readNumber();
+                expect(',');
+                type[nodes] = readType();
+                expect('=');
+                if (!atLineEnd()) {
+                    do {
+                        if (edges == edgeFrom.length) {
+                            int n = 2 * edges;
+                            edgeFrom = Arrays.copyOf(edgeFrom, n);
+                            edgeTo = Arrays.copyOf(edgeTo, n);
+                            edgeLength = Arrays.copyOf(edgeLength, n);
+                        }
+                        edgeFrom[edges] = nodes;
+                        edgeTo[edges] = readNumber();
+                        expect('-');
+                        edgeLength[edges] = (int) readNumber();
+                        edges++;
+                    } while (skip(','));
+                }
+                endLine();
+                nodes++;
+            }
+        }
+
+        /**
+         * Read a non-negative decimal number and return it.
+         */
+        private long readNumber() {
+            int start = pos;
+            long v = 0;
+            while (pos < end) {
+                int d = text.get(pos) - '0';
+                if (d < 0 || d > 9) {
+                    break;
+                }
+                v = v * 10 + d;
+                pos++;
+            }
+            if (pos == start || pos - start > 18) {
+                throw error("a number");
+            }
+            return v;
+        }
+
+        /**
+         * Read the name of a tile type and return its ordinal.
+         */
+        private byte readType() {
+            for (int t = 0; t < TYPE_NAMES.length; t++) {
+                byte[] name = TYPE_NAMES[t];
+                if (pos + name.length <= end && matches(name)) {
+                    pos += name.length;
+                    return (byte) t;
+                }
+            }
+            throw error("a tile type");
+        }
+
+        /**
+         * Return true iff name is at pos, followed by something other than a letter.
+         */
+        private boolean matches(byte[] name) {
+            for (int i = 0; i < name.length; i++) {
+                if (text.get(pos + i) != name[i]) {
+                    return false;
+                }
+            }
+            int next = pos + name.length;
+            return next == end || !Character.isLetter(text.get(next));
+        }
+
+        /**
+         * Skip the character c, throwing an IllegalArgumentException if it is not at pos.
+         */
+        private void expect(char c) {
+            if (!skip(c)) {
+                throw error("'" + c + "'");
+            }
+        }
+
+        /**
+         * Skip the character c and return true if it is at pos; otherwise return false.
+         */
+        private boolean skip(char c) {
+            if (pos < end && text.get(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Skip up to and including the next c on this line.
+         */
+        private void skipPast(char c) {
+            while (!atLineEnd()) {
+                if (text.get(pos++) == c) {
+                    return;
+                }
+            }
+            throw error("'" + c + "'");
+        }
+
+        /**
+         * Return true iff pos is at the end of a line.
+         */
+        private boolean atLineEnd() {
+            return pos == end || text.get(pos) == '\n' || text.get(pos) == '\r';
+        }
+
+        /**
+         * Skip the line break at pos, throwing an IllegalArgumentException if this line has more characters.
+         */
+        private void endLine() {
+            if (!atLineEnd()) {
+                throw error("the end of the line");
+            }
+            skip('\r');
+            skip('\n');
+        }
+
+        /**
+         * Return an exception saying that what was expected is not at pos.
+         */
+        private IllegalArgumentException error(String expected) {
+            return new IllegalArgumentException("deserialize: Expected " + expected + " at byte " + pos);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package main;
 
 import game.GameState;
+import student.Explorer;
+import student.PlanningBudget;
 
 import java.util.Optional;
 
@@ -10,10 +12,13 @@ import java.util.Optional;
 public class GUImain {
 
     /**
-     * The main program.
+     * The main program. -s gives the seed and -m the time in ms the escape may be planned for.
      */
     public static void main(String[] args) {
         Optional<Long> seed = Utilities.parseSeedArgs(args);
-        GameState.runNewGame((seed.isPresent() ? seed.get() : 0), true);
+        Optional<Integer> budget = Utilities.parseIntArg("-m", args);
+        Explorer explorer = new Explorer();
+        explorer.setPlanningBudget(budget.isPresent() ? Math.max(budget.get(), 0) : PlanningBudget.DEFAULT_MILLIS);
+        GameState.runNewGame((seed.isPresent() ? seed.get() : 0), true, explorer);
     }
 }
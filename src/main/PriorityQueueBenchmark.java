@@ -0,0 +1,231 @@
+package main;
+
+import game.Cavern;
+import game.CavernFactory;
+import game.CompactGraph;
+import game.IntMinHeap;
+import game.Node;
+import student.PriorityQueue;
+import student.PriorityQueueBackend;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Compares the throughput of the PriorityQueue backends on real search workloads.
+ * <p>
+ * Over the escape cavern of a seed, Dijkstra's algorithm is run from the exit to every
+ * node (as for the distances to the exit), and A* from where the escape starts to the
+ * exit (with the Manhattan distance as heuristic). The add, poll and
+ * updatePriority operations they perform on their frontier are recorded. The traces are
+ * then replayed on a queue of each backend, with the Nodes of the cavern as elements, so
+ * every backend does exactly the same work.
+ * <p>
+ * Options: -s seed, -r rows and -c cols for a larger cavern, -n repetitions per backend
+ * (the best is reported), and -b a comma-separated list of backends.
+ */
+public class PriorityQueueBenchmark {
+    private static final int ADD = 0;
+    private static final int UPDATE = 1;
+    private static final int POLL = 2;
+
+    public static void main(String[] args) {
+        long seed = Utilities.parseSeedArgs(args).orElse(0L);
+        Optional<Integer> rows = Utilities.parseIntArg("-r", args);
+        Optional<Integer> cols = Utilities.parseIntArg("-c", args);
+        int reps = Math.max(Utilities.parseIntArg("-n", args).orElse(5), 1);
+        List<PriorityQueueBackend> backends = parseBackends(args);
+
+        CavernFactory.Caverns caverns = rows.isPresent() || cols.isPresent()
+                ? CavernFactory.generate(seed, rows.orElse(100), cols.orElse(100), Cavern.GenerationMode.CONSTRUCTIVE)
+                : CavernFactory.generate(seed);
+        Cavern cavern = caverns.getEscapeCavern();
+        CompactGraph g = cavern.getCompactGraph();
+        Node orb = caverns.getExploreCavern().getTarget();
+        int from = g.indexAt(orb.getTile().getRow(), orb.getTile().getColumn());
+        int exit = g.indexOf(cavern.getTarget());
+        Node[] nodes = new Node[g.size()];
+        for (int v = 0; v < nodes.length; v++) {
+            nodes[v] = g.node(v);
+        }
+
+        System.out.println("Cavern           : " + g.getRowCount() + " x " + g.getColumnCount()
+                + ", " + g.size() + " nodes, seed " + seed);
+        Trace[] traces = {record("dijkstra", g, exit, -1), record("a*", g, from, exit)};
+        for (Trace t : traces) {
+            System.out.println();
+            System.out.println(t.name + ": " + t.adds + " adds, " + t.updates + " updates, " + t.polls + " polls");
+            for (PriorityQueueBackend b : backends) {
+                verify(t, b, g, nodes);
+                long best = Long.MAX_VALUE;
+                for (int i = 0; i < reps; i++) {
+                    long start = System.nanoTime();
+                    replay(t, b.create(), nodes);
+                    best = Math.min(best, System.nanoTime() - start);
+                }
+                int ops = t.adds + t.updates + t.polls;
+                System.out.printf("  %-8s %10.3f ms %8.1f Mops/s%n", b, best / 1e6, ops * 1e3 / best);
+            }
+        }
+    }
+
+    /**
+     * Return the backends named by the -b option, or all of them if there is none.
+     */
+    private static List<PriorityQueueBackend> parseBackends(String... args) {
+        int i = Arrays.asList(args).indexOf("-b");
+        if (i < 0 || i + 1 >= args.length) {
+            return Arrays.asList(PriorityQueueBackend.values());
+        }
+        List<PriorityQueueBackend> backends = new ArrayList<>();
+        for (String name : args[i + 1].split(",")) {
+            backends.add(PriorityQueueBackend.forName(name));
+        }
+        return backends;
+    }
+
+    /**
+     * Run a search of g from source, with an IntMinHeap as the frontier, and return the
+     * operations it performs on the frontier. If target is negative, the search is
+     * Dijkstra's algorithm over all of g; otherwise it is A* towards target.
+     */
+    private static Trace record(String name, CompactGraph g, int source, int target) {
+        Trace t = new Trace(name);
+        int n = g.size();
+        int[] dist = new int[n];
+        Arrays.fill(dist, Integer.MAX_VALUE);
+        boolean[] settled = new boolean[n];
+        IntMinHeap frontier = new IntMinHeap(n);
+        dist[source] = 0;
+        frontier.add(source, heuristic(g, source, target));
+        t.add(ADD, source, heuristic(g, source, target));
+        while (!frontier.isEmpty()) {
+            int v = frontier.poll();
+            t.add(POLL, v, 0);
+            settled[v] = true;
+            if (v == target) {
+                break;
+            }
+            for (int i = g.neighbourStart(v); i < g.neighbourEnd(v); i++) {
+                int w = g.neighbour(i);
+                int d = dist[v] + g.weight(i);
+                if (settled[w] || d >= dist[w]) {
+                    continue;
+                }
+                int p = d + heuristic(g, w, target);
+                if (dist[w] == Integer.MAX_VALUE) {
+                    frontier.add(w, p);
+                    t.add(ADD, w, p);
+                } else {
+                    frontier.decreaseKey(w, p);
+                    t.add(UPDATE, w, p);
+                }
+                dist[w] = d;
+            }
+        }
+        return t;
+    }
+
+    /**
+     * Return the Manhattan distance from v to target, or 0 if target is negative.
+     * Every edge has length at least 1, so this is a consistent heuristic.
+     */
+    private static int heuristic(CompactGraph g, int v, int target) {
+        if (target < 0) {
+            return 0;
+        }
+        return Math.abs(g.row(v) - g.row(target)) + Math.abs(g.column(v) - g.column(target));
+    }
+
+    /**
+     * Perform the operations of t on q, with nodes[v] as the element for index v.
+     */
+    private static void replay(Trace t, PriorityQueue<Node> q, Node[] nodes) {
+        int[] ops = t.ops;
+        for (int i = 0; i < t.length; i += 3) {
+            switch (ops[i]) {
+                case ADD:
+                    q.add(nodes[ops[i + 1]], ops[i + 2]);
+                    break;
+                case UPDATE:
+                    q.updatePriority(nodes[ops[i + 1]], ops[i + 2]);
+                    break;
+                default:
+                    q.poll();
+            }
+        }
+    }
+
+    /**
+     * Replay t on a new queue of backend b, checking that every poll returns an element
+     * with the lowest priority. Elements with equal priorities may be polled in any order;
+     * with a consistent heuristic that does not change the elements later operations use.
+     * Throw an IllegalStateException if a poll returns the wrong element.
+     */
+    private static void verify(Trace t, PriorityQueueBackend b, CompactGraph g, Node[] nodes) {
+        PriorityQueue<Node> q = b.create();
+        int[] ops = t.ops;
+        int[] priority = new int[nodes.length];
+        for (int i = 0; i < t.length; i += 3) {
+            int v = ops[i + 1];
+            switch (ops[i]) {
+                case ADD:
+                    q.add(nodes[v], ops[i + 2]);
+                    priority[v] = ops[i + 2];
+                    break;
+                case UPDATE:
+                    q.updatePriority(nodes[v], ops[i + 2]);
+                    priority[v] = ops[i + 2];
+                    break;
+                default:
+                    // v is the element the recording polled, so its priority is the lowest.
+                    int polled = g.indexOf(q.poll());
+                    if (priority[polled] != priority[v]) {
+                        throw new IllegalStateException(b + " polled priority " + priority[polled]
+                                + ", expected " + priority[v]);
+                    }
+            }
+        }
+    }
+
+    /**
+     * An instance is a recorded sequence of queue operations, each three ints:
+     * the kind of operation, the index of the element and its priority.
+     */
+    private static final class Trace {
+        private final String name;
+        private int[] ops = new int[3 * 1024];
+        private int length;
+        private int adds;
+        private int updates;
+        private int polls;
+
+        /**
+         * Constructor: an empty trace called name.
+         */
+        private Trace(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Append operation op on the element with index v and priority p.
+         */
+        private void add(int op, int v, int p) {
+            if (length + 3 > ops.length) {
+                ops = Arrays.copyOf(ops, 2 * ops.length);
+            }
+            ops[length++] = op;
+            ops[length++] = v;
+            ops[length++] = p;
+            if (op == ADD) {
+                adds++;
+            } else if (op == UPDATE) {
+                updates++;
+            } else {
+                polls++;
+            }
+        }
+    }
+}
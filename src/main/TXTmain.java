@@ -1,17 +1,33 @@
 package main;
 
+import game.BatchEngine;
+import game.BatchSummary;
+import game.Cavern;
+import game.CavernFactory;
+import game.GameResult;
 import game.GameState;
+import game.Replay;
+import student.EscapePathFinders;
+import student.Explorer;
+import student.PlanningBudget;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.Random;
 
 /**
  * Runs the program via the text (console) interface.
  */
 public class TXTmain {
+    /** The planning budget of each escape in batch and tournament mode, unless -m is given. */
+    static final long BATCH_BUDGET_MILLIS = 50;
+
     public static void main(String[] args) throws IOException {
         List<String> argList = new ArrayList<>(Arrays.asList(args));
         int repeatNumberIndex = argList.indexOf("-n");
@@ -24,16 +40,193 @@ public class TXTmain {
             }
         }
         Optional<Long> seed = Utilities.parseSeedArgs(args);
+        Optional<Integer> rows = Utilities.parseIntArg("-r", args);
+        Optional<Integer> cols = Utilities.parseIntArg("-c", args);
+
+        // The escape path finder, by its name in student.EscapePathFinders (a list of names with -T).
+        int finderIndex = argList.indexOf("-f");
+        String finder = finderIndex >= 0 && finderIndex + 1 < argList.size() ? argList.get(finderIndex + 1) : null;
+        Optional<Integer> threads = Utilities.parseIntArg("-t", args);
+        // A recorded game to play again, or the file to record a single game into.
+        Optional<String> replayFile = Utilities.parseStringArg("-R", args);
+        Optional<Path> recordFile = Utilities.parseStringArg("-w", args).map(Paths::get);
+        // The time each escape may be planned for, in milliseconds.
+        Optional<Integer> budgetArg = Utilities.parseIntArg("-m", args);
+        boolean batch = argList.contains("-p") || argList.contains("-T");
+        long budget = budgetArg.isPresent() ? Math.max(budgetArg.get(), 0)
+                : batch ? BATCH_BUDGET_MILLIS : PlanningBudget.DEFAULT_MILLIS;
 
         int totalScore = 0;
 
-        for (int i = 0; i < numTimesToRun; i++) {
-            totalScore += GameState.runNewGame((seed.isPresent() ? seed.get() : 0), false);
+        String finderName = finder != null ? finder : EscapePathFinders.DEFAULT;
+        List<String> finders = null;
+        try {
+            if (argList.contains("-T")) {
+                finders = Tournament.finders(finder);
+            } else if (finderName.contains(",")) {
+                // Only a tournament plays several finders.
+                System.err.println("Error, -f takes a single finder unless -T is given");
+                return;
+            } else {
+                EscapePathFinders.requireKnown(finderName);
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error, " + e.getMessage());
+            return;
+        }
+
+        if (replayFile.isPresent()) {
+            // Replay mode: play a recorded game again without running the explorer.
+            try {
+                replay(Paths.get(replayFile.get()), rows, cols);
+            } catch (IllegalArgumentException e) {
+                System.err.println("Error, " + e.getMessage());
+            }
+            return;
+        }
+        if (recordFile.isPresent() && (numTimesToRun > 1 || argList.contains("-T") || argList.contains("-p"))) {
+            System.err.println("Error, -w records a single game");
+            return;
+        }
+        if ((rows.isPresent() || cols.isPresent()) && batch) {
+            // Batches and tournaments play games of the usual sizes only.
+            System.err.println("Error, -r and -c cannot be combined with -p or -T");
+            return;
+        }
+
+        if (argList.contains("-T")) {
+            // Tournament mode: play the same seeds with every finder and compare them.
+            long[] seeds = CavernFactory.seeds(seed.isPresent() ? seed.get() : new Random().nextLong(), numTimesToRun);
+            Tournament.run(finders, seeds, engine(threads), budget);
+            return;
+        }
+
+        if (argList.contains("-p")) {
+            // Batch mode: play the games concurrently and report their results and statistics.
+            runBatch(seed, numTimesToRun, engine(threads), finderName, budget);
+            return;
+        } else if (rows.isPresent() || cols.isPresent()) {
+            // Large-map mode: the dimensions are given explicitly and may exceed the usual maximum.
+            int r = rows.orElse(GameState.MAX_ROWS);
+            int c = cols.orElse(GameState.MAX_COLS);
+            Random rand = new Random();
+            for (int i = 0; i < numTimesToRun; i++) {
+                totalScore += runLargeGame((seed.isPresent() ? seed.get() : rand.nextLong()), r, c,
+                        explorer(finderName, budget), recordFile);
+                System.out.println();
+            }
+        } else if (recordFile.isPresent()) {
+            CavernFactory.Caverns caverns = CavernFactory.generate(seed.isPresent() ? seed.get() : new Random().nextLong());
+            totalScore += GameState.runNewGame(caverns, false, explorer(finderName, budget), recordFile.get());
+            System.out.println("Replay saved to  : " + recordFile.get());
+            System.out.println();
+        } else if (numTimesToRun == 1) {
+            totalScore += GameState.runNewGame((seed.isPresent() ? seed.get() : 0), false, explorer(finderName, budget));
             System.out.println();
+        } else {
+            // Generate the caverns in parallel while earlier games are being played.
+            long[] seeds = new long[numTimesToRun];
+            Random rand = new Random();
+            for (int i = 0; i < numTimesToRun; i++) {
+                seeds[i] = (seed.isPresent() ? seed.get() : rand.nextLong());
+            }
+            try (CavernFactory factory = new CavernFactory()) {
+                Iterator<CavernFactory.Caverns> caverns = factory.generateAll(seeds);
+                while (caverns.hasNext()) {
+                    totalScore += GameState.runNewGame(caverns.next(), false, explorer(finderName, budget));
+                    System.out.println();
+                }
+            }
         }
 
         if (totalScore != 0) System.out.println("Average score : " + totalScore / numTimesToRun);
     }
 
+    /**
+     * Play n games on engine, escaping with the finder called finder planning for at most
+     * budget ms, and print a line for each game followed by a summary.
+     * The seeds are drawn from masterSeed if it is present, and are random otherwise.
+     */
+    private static void runBatch(Optional<Long> masterSeed, int n, BatchEngine engine, String finder, long budget) {
+        long[] seeds = CavernFactory.seeds(masterSeed.isPresent() ? masterSeed.get() : new Random().nextLong(), n);
+        long start = System.nanoTime();
+        List<GameResult> results = engine.run(() -> explorer(finder, budget), seeds);
+        long wallMillis = (System.nanoTime() - start) / 1000000;
+        for (GameResult r : results) {
+            System.out.println(r);
+            if (r.getError() != null) {
+                System.out.println("    error: " + r.getError());
+            }
+        }
+        System.out.println();
+        System.out.print(new BatchSummary(results));
+        System.out.println("Wall time        : " + wallMillis + " ms on " + engine.getParallelism() + " threads ("
+                + String.format("%.1f", n * 1000.0 / Math.max(wallMillis, 1)) + " games/s)");
+    }
+
+    /**
+     * Play the game recorded in the file at path again and print its result. Its caverns
+     * are generated from its seed, with size (rows, cols) if either is present.
+     */
+    private static void replay(Path path, Optional<Integer> rows, Optional<Integer> cols) throws IOException {
+        Replay replay = Replay.load(path);
+        CavernFactory.Caverns caverns = rows.isPresent() || cols.isPresent()
+                ? CavernFactory.generate(replay.getSeed(), rows.orElse(GameState.MAX_ROWS),
+                cols.orElse(GameState.MAX_COLS), Cavern.GenerationMode.CONSTRUCTIVE)
+                : CavernFactory.generate(replay.getSeed());
+        long start = System.nanoTime();
+        GameResult result = GameState.replay(caverns, replay, false);
+        long replayMicros = (System.nanoTime() - start) / 1000;
+        System.out.println();
+        System.out.println(result);
+        System.out.println("Replayed " + replay.getExploreMoves() + " + " + replay.getEscapeMoves()
+                + " moves in " + replayMicros + " us");
+    }
+
+    /**
+     * Generate the caverns of size (rows, cols) for seed, report the heap they use,
+     * and play a game on them with explorer. Return the score.
+     * If recordFile is present, save a replay of the game to it.
+     */
+    private static int runLargeGame(long seed, int rows, int cols, Explorer explorer,
+                                    Optional<Path> recordFile) throws IOException {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+        long start = System.nanoTime();
+        CavernFactory.Caverns caverns = CavernFactory.generate(seed, rows, cols, Cavern.GenerationMode.CONSTRUCTIVE);
+        long generationMillis = (System.nanoTime() - start) / 1000000;
+        System.gc();
+        long heapUsed = runtime.totalMemory() - runtime.freeMemory() - heapBefore;
+
+        System.out.println("Cavern size      : " + rows + " x " + cols);
+        System.out.println("Generation time  : " + generationMillis + " ms");
+        // Two caverns (explore and escape) of rows * cols tiles each
+        System.out.println("Heap per tile    : " + heapUsed / (2L * rows * cols) + " bytes");
+        if (recordFile.isPresent()) {
+            int score = GameState.runNewGame(caverns, false, explorer, recordFile.get());
+            System.out.println("Replay saved to  : " + recordFile.get());
+            return score;
+        }
+        return GameState.runNewGame(caverns, false, explorer);
+    }
+
+    /**
+     * Return a new Explorer that escapes with the finder called finder, planning for at
+     * most budget ms.
+     */
+    static Explorer explorer(String finder, long budget) {
+        Explorer explorer = new Explorer(finder);
+        explorer.setPlanningBudget(budget);
+        return explorer;
+    }
+
+    /**
+     * Return an engine that plays games on the given number of threads, or on all available
+     * processors if threads is empty.
+     */
+    private static BatchEngine engine(Optional<Integer> threads) {
+        return threads.isPresent() ? new BatchEngine(Math.max(threads.get(), 1)) : new BatchEngine();
+    }
 
 }
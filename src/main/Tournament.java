@@ -0,0 +1,127 @@
+package main;
+
+import game.BatchEngine;
+import game.BatchSummary;
+import game.EscapeState;
+import game.GameResult;
+import student.EscapePath;
+import student.EscapePathFinder;
+import student.EscapePathFinders;
+import student.Explorer;
+import student.PlanningBudget;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Runs every chosen EscapePathFinder on the same seeds and prints their results side by side:
+ * how often they escape, the gold and score they reach, the latency of planning (the time
+ * findEscapePath takes) and the CPU time they use.
+ * <p>
+ * The finders take turns: the games of one finder are played concurrently on a BatchEngine,
+ * and only then are those of the next finder started. Several finders plan against a
+ * wall-clock budget, so running them at the same time would let each slow the others down,
+ * and it would make the CPU time of the process impossible to attribute to one finder.
+ */
+public class Tournament {
+
+    /**
+     * Play the games for seeds with each finder in finders on engine, planning each escape
+     * for at most budget ms, and print the table.
+     */
+    static void run(List<String> finders, long[] seeds, BatchEngine engine, long budget) {
+        System.out.println("Tournament       : " + finders.size() + " finders, " + seeds.length
+                + " seeds, " + engine.getParallelism() + " threads, " + budget + " ms to plan");
+        System.out.println();
+        System.out.printf("%-10s %8s %10s %10s %10s %9s %9s %9s %9s %9s %9s%n", "finder", "escaped",
+                "gold", "gold p50", "score", "plan p50", "plan p90", "plan p99", "plan max", "cpu (s)", "wall (s)");
+        for (String name : finders) {
+            Queue<Long> latencies = new ConcurrentLinkedQueue<>();
+            long cpuBefore = processCpuNanos();
+            long start = System.nanoTime();
+            List<GameResult> results = engine.run(() -> {
+                Explorer explorer = new Explorer(state -> timed(name, state, latencies));
+                explorer.setPlanningBudget(budget);
+                return explorer;
+            }, seeds);
+            long wall = System.nanoTime() - start;
+            long cpu = processCpuNanos() - cpuBefore;
+
+            BatchSummary summary = new BatchSummary(results);
+            long[] plan = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+            System.out.printf("%-10s %8s %10.1f %10.1f %10.1f %9.1f %9.1f %9.1f %9.1f %9s %9.1f%n", name,
+                    summary.getEscapeSuccesses() + "/" + summary.getGames(),
+                    summary.getGold().getMean(), summary.getGold().getMedian(), summary.getScore().getMean(),
+                    millis(plan, 50), millis(plan, 90), millis(plan, 99), millis(plan, 100),
+                    cpuBefore < 0 ? "n/a" : String.format("%.1f", cpu / 1e9), wall / 1e9);
+        }
+        System.out.println();
+        System.out.println("plan pNN: percentiles of the time findEscapePath took, in ms");
+    }
+
+    /**
+     * Return a new finder registered as name for state, whose findEscapePath adds the time
+     * it takes (in nanoseconds) to latencies.
+     */
+    private static EscapePathFinder timed(String name, EscapeState state, Queue<Long> latencies) {
+        EscapePathFinder finder = EscapePathFinders.create(name, state);
+        return new EscapePathFinder() {
+            @Override
+            public EscapePath findEscapePath(EscapeState s) {
+                return findEscapePath(s, new PlanningBudget(PlanningBudget.DEFAULT_MILLIS));
+            }
+
+            @Override
+            public EscapePath findEscapePath(EscapeState s, PlanningBudget budget) {
+                long start = System.nanoTime();
+                EscapePath path = finder.findEscapePath(s, budget);
+                latencies.add(System.nanoTime() - start);
+                return path;
+            }
+        };
+    }
+
+    /**
+     * Return the p-th percentile (nearest rank) of the sorted nanosecond times in sorted,
+     * in milliseconds, or 0 if there are none.
+     */
+    private static double millis(long[] sorted, int p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+        return sorted[Math.max(rank - 1, 0)] / 1e6;
+    }
+
+    /**
+     * Return the CPU time used by this process so far, in nanoseconds, or -1 if the
+     * virtual machine does not report it.
+     */
+    private static long processCpuNanos() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+        }
+        return -1;
+    }
+
+    /**
+     * Return the finders named in the comma-separated list names, or all registered finders
+     * if names is null. Throw an IllegalArgumentException if a name is not registered.
+     */
+    static List<String> finders(String names) {
+        if (names == null) {
+            return EscapePathFinders.names();
+        }
+        List<String> finders = new ArrayList<>();
+        for (String name : names.split(",")) {
+            EscapePathFinders.requireKnown(name.trim());
+            finders.add(name.trim());
+        }
+        return finders;
+    }
+}
@@ -24,4 +24,37 @@ public class Utilities {
         }
         return seed;
     }
+
+    /**
+     * Return the number following flag in args, if there is one.
+     */
+    static Optional<Integer> parseIntArg(String flag, String... args) {
+        List<String> argList = new ArrayList<>(Arrays.asList(args));
+        int index = argList.indexOf(flag);
+        Optional<Integer> value = Optional.empty();
+        if (index >= 0) {
+            try {
+                value = Optional.of(Integer.parseInt(argList.get(index + 1)));
+            } catch (NumberFormatException e) {
+                System.err.println("Error, " + flag + " must be followed by a number");
+            } catch (IndexOutOfBoundsException e) {
+                System.err.println("Error, " + flag + " must be followed by a number");
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Return the argument following flag in args, if there is one.
+     */
+    static Optional<String> parseStringArg(String flag, String... args) {
+        List<String> argList = new ArrayList<>(Arrays.asList(args));
+        int index = argList.indexOf(flag);
+        if (index >= 0 && index + 1 < argList.size()) {
+            return Optional.of(argList.get(index + 1));
+        } else if (index >= 0) {
+            System.err.println("Error, " + flag + " must be followed by an argument");
+        }
+        return Optional.empty();
+    }
 }
@@ -22,9 +22,9 @@ public abstract class AbstractEscapePathFinder implements EscapePathFinder {
 	 */
 	EscapePath escapePath;
 	/**
-	 * Maximum time allowed to find a valid path.
+	 * The budget of the current search; planning stops once it is exhausted
 	 */
-	int MAX_TIME_IN_MS = 10000;
+	PlanningBudget budget = new PlanningBudget(PlanningBudget.DEFAULT_MILLIS);
 	/**
 	 * Estimate of average edge length
 	 */
@@ -51,6 +51,46 @@ public abstract class AbstractEscapePathFinder implements EscapePathFinder {
 		exitCol = state.getExit().getTile().getColumn();
 	}
 
+	/**
+	 * Plan an escape with a budget of {@code PlanningBudget.DEFAULT_MILLIS}
+	 */
+	@Override
+	public EscapePath findEscapePath(EscapeState state) {
+
+		return findEscapePath(state, new PlanningBudget(PlanningBudget.DEFAULT_MILLIS));
+	}
+
+	@Override
+	public abstract EscapePath findEscapePath(EscapeState state, PlanningBudget budget);
+
+	/**
+	 * The best plan found so far, which can be read from any thread while a
+	 * search is running
+	 * 
+	 * @return the best {@code EscapePath} so far, a valid escape once the
+	 *         search has started, or null before
+	 */
+	public synchronized EscapePath getBestEscapePath() {
+
+		return escapePath;
+	}
+
+	/**
+	 * Start a search with the given budget and fallback plan, which becomes
+	 * the best plan so far and is published
+	 * 
+	 * @param budget
+	 *            the budget of the search
+	 * @param fallback
+	 *            a valid escape to return if nothing better is found
+	 */
+	protected synchronized void startPlanning(PlanningBudget budget, EscapePath fallback) {
+
+		this.budget = budget;
+		escapePath = fallback;
+		budget.publish(fallback);
+	}
+
 	/**
 	 * Find a given {@code Node} in a supplied collection of {@code SearchNode}
 	 * 
@@ -99,6 +139,7 @@ public abstract class AbstractEscapePathFinder implements EscapePathFinder {
 		if (p.getGold() > currentGold || (p.getGold() == currentGold && p.getLength() < currentLength)) {
 			if (p.getLength() <= escapeState.getTimeRemaining()) {
 				escapePath = p;
+				budget.publish(p);
 			}
 		}
 	}
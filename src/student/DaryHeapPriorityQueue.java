@@ -0,0 +1,208 @@
+package student;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * An instance is a priority queue of elements of type E implemented as a d-ary heap.
+ * <p>
+ * Unlike PriorityQueueImpl, the heap is an array of entries that carry their own priority
+ * and index, so the map from elements to entries is used only by add and updatePriority,
+ * never while comparing. A fan-out d above 2 makes the heap shallower, which favours the
+ * many adds and priority decreases of Dijkstra-like searches.
+ */
+public class DaryHeapPriorityQueue<E> implements PriorityQueue<E> {
+
+    /**
+     * The default fan-out.
+     */
+    public static final int DEFAULT_ARITY = 4;
+
+    private final int arity;
+    private int size; // number of elements in the priority queue (and heap)
+
+    /**
+     * heap invariant for b[0..size-1]:
+     * 1. The children of each b[i] are b[d*i+1..d*i+d], where d is the arity.
+     * 2. The priority of the parent of each b[i] is <= the priority of b[i].
+     * 3. b[i].index == i, and map maps the element of each b[i] to b[i].
+     */
+    private Entry<E>[] b;
+    private final HashMap<E, Entry<E>> map = new HashMap<>();
+
+    /**
+     * Constructor: an empty heap with fan-out DEFAULT_ARITY.
+     */
+    public DaryHeapPriorityQueue() {
+        this(DEFAULT_ARITY);
+    }
+
+    /**
+     * Constructor: an empty heap with fan-out arity.
+     * Throw an IllegalArgumentException if arity is less than 2.
+     */
+    @SuppressWarnings("unchecked")
+    public DaryHeapPriorityQueue(int arity) {
+        if (arity < 2) {
+            throw new IllegalArgumentException("arity must be at least 2");
+        }
+        this.arity = arity;
+        b = (Entry<E>[]) new Entry<?>[16];
+    }
+
+    /**
+     * Return a string that gives this priority queue, in the format:
+     * [item0:priority0, item1:priority1, ..., item(N-1):priority(N-1)]
+     */
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            if (s.length() > 0) {
+                s.append(", ");
+            }
+            s.append(b[i].element + ":" + b[i].priority);
+        }
+        return "[" + s.toString() + "]";
+    }
+
+    /**
+     * Return the number of elements in the priority queue.
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Add e with priority p to the priority queue.
+     * Throw an illegalArgumentException if e is already in the queue.
+     */
+    @Override
+    public void add(E e, double p) throws IllegalArgumentException {
+        if (map.containsKey(e)) {
+            throw new IllegalArgumentException("e is already in priority queue");
+        }
+        if (size == b.length) {
+            b = Arrays.copyOf(b, 2 * size);
+        }
+        Entry<E> entry = new Entry<>(e, p);
+        map.put(e, entry);
+        bubbleUp(entry, size++);
+    }
+
+    /**
+     * Return the element of the priority queue with lowest priority, without changing the queue.
+     * Throw a PriorityQueueException if the priority queue is empty.
+     */
+    @Override
+    public E peek() {
+        if (size == 0) {
+            throw new PriorityQueueException("priority queue is empty");
+        }
+        return b[0].element;
+    }
+
+    /**
+     * Remove and return the element of the priority queue with lowest priority.
+     * Throw a PriorityQueueException if the priority queue is empty.
+     */
+    @Override
+    public E poll() {
+        E val = peek();
+        map.remove(val);
+        size--;
+        Entry<E> last = b[size];
+        b[size] = null;
+        if (size > 0) {
+            bubbleDown(last, 0);
+        }
+        return val;
+    }
+
+    /**
+     * Change the priority of element e to p.
+     * Throw an illegalArgumentException if e is not in the priority queue.
+     */
+    @Override
+    public void updatePriority(E e, double p) {
+        Entry<E> entry = map.get(e);
+        if (entry == null) {
+            throw new IllegalArgumentException();
+        }
+        double old = entry.priority;
+        entry.priority = p;
+        if (p < old) {
+            bubbleUp(entry, entry.index);
+        } else {
+            bubbleDown(entry, entry.index);
+        }
+    }
+
+    /**
+     * Put entry in b[k] and move it up to its right place.
+     * Precondition: Every b[i] satisfies the heap property except perhaps
+     * that entry's priority < the priority of b[k]'s parent.
+     */
+    private void bubbleUp(Entry<E> entry, int k) {
+        while (k > 0) {
+            int parent = (k - 1) / arity;
+            Entry<E> bp = b[parent];
+            if (bp.priority <= entry.priority) {
+                break;
+            }
+            b[k] = bp;
+            bp.index = k;
+            k = parent;
+        }
+        b[k] = entry;
+        entry.index = k;
+    }
+
+    /**
+     * Put entry in b[k] and move it down to its right place.
+     * Precondition: Every b[i] satisfies the heap property except perhaps
+     * that entry's priority > the priority of a child of b[k].
+     */
+    private void bubbleDown(Entry<E> entry, int k) {
+        while (true) {
+            int first = arity * k + 1;
+            if (first >= size) {
+                break;
+            }
+            int last = Math.min(first + arity, size);
+            Entry<E> smallest = b[first];
+            for (int c = first + 1; c < last; c++) {
+                if (b[c].priority < smallest.priority) {
+                    smallest = b[c];
+                }
+            }
+            if (entry.priority <= smallest.priority) {
+                break;
+            }
+            int c = smallest.index;
+            b[k] = smallest;
+            smallest.index = k;
+            k = c;
+        }
+        b[k] = entry;
+        entry.index = k;
+    }
+
+    /**
+     * An instance contains an element of the heap with its priority and index in b.
+     */
+    private static class Entry<E> {
+        private final E element;
+        private double priority;
+        private int index;
+
+        /**
+         * Constructor: an instance for element e with priority p.
+         */
+        private Entry(E e, double p) {
+            element = e;
+            priority = p;
+        }
+    }
+}
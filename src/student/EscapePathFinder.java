@@ -11,5 +11,30 @@ import game.EscapeState;
  */
 public interface EscapePathFinder {
 
+	/**
+	 * Plan an escape with the finder's default budget
+	 * 
+	 * @param state
+	 *            the escape state
+	 * @return a valid escape path
+	 */
 	EscapePath findEscapePath(EscapeState state);
+
+	/**
+	 * Plan an escape as an anytime search: stop soon after the budget is
+	 * exhausted or cancelled, publish each improved plan to the budget's
+	 * listener, and return the best plan found. Finders that do not search
+	 * ignore the budget and publish their only plan.
+	 * 
+	 * @param state
+	 *            the escape state
+	 * @param budget
+	 *            the deadline, cancellation flag and listener of the search
+	 * @return a valid escape path
+	 */
+	default EscapePath findEscapePath(EscapeState state, PlanningBudget budget) {
+		EscapePath plan = findEscapePath(state);
+		budget.publish(plan);
+		return plan;
+	}
 }
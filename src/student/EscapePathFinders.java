@@ -0,0 +1,106 @@
+package student;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+import game.EscapeState;
+
+/**
+ * Registry of the available {@code EscapePathFinder} implementations, by
+ * name. The built-in finders are registered when the class is loaded; others
+ * can be added with {@code register} before a game starts. Names are case
+ * insensitive.
+ */
+public final class EscapePathFinders {
+
+	/**
+	 * The name of the finder used when none is chosen
+	 */
+	public static final String DEFAULT = "stack";
+
+	// Factories in registration order, by lower case name
+	private static final Map<String, Function<EscapeState, EscapePathFinder>> FINDERS = new LinkedHashMap<>();
+
+	static {
+		register("stack", StackEscapePathFinder::new);
+		register("simple", SimpleEscapePathFinder::new);
+		register("shortest", ShortestEscapePathFinder::new);
+	}
+
+	private EscapePathFinders() {
+	}
+
+	/**
+	 * Register a finder, replacing any finder already registered under the
+	 * same name
+	 *
+	 * @param name
+	 *            the name to select the finder by
+	 * @param factory
+	 *            creates a new finder for an {@code EscapeState}
+	 */
+	public static synchronized void register(String name, Function<EscapeState, EscapePathFinder> factory) {
+
+		FINDERS.put(name.toLowerCase(Locale.ROOT), factory);
+	}
+
+	/**
+	 * The names of the registered finders
+	 *
+	 * @return the names, in registration order
+	 */
+	public static synchronized List<String> names() {
+
+		return new ArrayList<>(FINDERS.keySet());
+	}
+
+	/**
+	 * The factory of a registered finder
+	 *
+	 * @param name
+	 *            the name of the finder
+	 * @return the factory registered under {@code name}
+	 * @throws IllegalArgumentException
+	 *             if no finder is registered under {@code name}
+	 */
+	public static synchronized Function<EscapeState, EscapePathFinder> factory(String name) {
+
+		requireKnown(name);
+		return FINDERS.get(name.toLowerCase(Locale.ROOT));
+	}
+
+	/**
+	 * Check that a finder is registered
+	 *
+	 * @param name
+	 *            the name of the finder
+	 * @throws IllegalArgumentException
+	 *             if no finder is registered under {@code name}
+	 */
+	public static synchronized void requireKnown(String name) {
+
+		if (!FINDERS.containsKey(name.toLowerCase(Locale.ROOT))) {
+			throw new IllegalArgumentException("Unknown escape path finder: " + name + " (known: " + names() + ")");
+		}
+	}
+
+	/**
+	 * Create a registered finder
+	 *
+	 * @param name
+	 *            the name of the finder
+	 * @param state
+	 *            the {@code EscapeState} the finder plans for
+	 * @return a new finder
+	 * @throws IllegalArgumentException
+	 *             if no finder is registered under {@code name}
+	 */
+	public static EscapePathFinder create(String name, EscapeState state) {
+
+		return factory(name).apply(state);
+	}
+}
@@ -1,25 +1,115 @@
 package student;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.function.Function;
 
 import game.EscapeState;
 import game.ExplorationState;
-import game.Node;
 
 public class Explorer {
 
-	private boolean explorationComplete;
 	private ExplorationState explorationState;
 	private List<ExploreNode> explorePath;
+	// Position of each node in explorePath, by id: an open-addressing hash
+	// table with linear probing whose keys are ids plus one (0 marks a free
+	// slot), so that looking up and adding nodes allocates nothing
+	private long[] explorePathKeys;
+	private int[] explorePathIndex;
+	private int explorePathIndexSize;
+	// Ids and distances to the orb of the neighbours of the current location
+	private final long[] neighbourIds = new long[ExplorationState.MAX_NEIGHBOURS];
+	private final int[] neighbourDistances = new int[ExplorationState.MAX_NEIGHBOURS];
+	// Ids of the neighbours of each visited node, by position in explorePath,
+	// MAX_NEIGHBOURS slots per node, and how many there are (0 if not visited)
+	private long[] visitedNeighbourIds;
+	private byte[] visitedNeighbourCounts;
+	// The route of a backtrack, reused from one backtrack to the next
+	private long[] backtrackRoute = new long[16];
 	// Comparator for evaluating explore path sort order
 	private Comparator<ExploreNode> explorePathComparator = (en1, en2) -> explorePathComparator(en1, en2);
 
 	
 	private EscapeState escapeState;
-	
+	// Creates the path finder that plans the escape
+	private final Function<EscapeState, EscapePathFinder> pathFinderFactory;
+	// Time the path finder may spend planning the escape
+	private long planningBudgetInMillis = PlanningBudget.DEFAULT_MILLIS;
+	// Whether the explorer and its path finder print nothing
+	private boolean quiet;
+	// Threads the path finder may plan with, or 0 for its default
+	private int planningThreads;
+
+	/**
+	 * Constructor for an {@code Explorer} that escapes with the default
+	 * {@code EscapePathFinder}
+	 */
+	public Explorer() {
+		this(EscapePathFinders.factory(EscapePathFinders.DEFAULT));
+	}
+
+	/**
+	 * Constructor for an {@code Explorer} that escapes with a registered
+	 * {@code EscapePathFinder}
+	 * 
+	 * @param pathFinderName
+	 *            the name of the finder in {@code EscapePathFinders}
+	 * @throws IllegalArgumentException
+	 *             if no finder is registered under that name
+	 */
+	public Explorer(String pathFinderName) {
+		this(EscapePathFinders.factory(pathFinderName));
+	}
+
+	/**
+	 * Constructor for an {@code Explorer} that escapes with the finders
+	 * created by a factory
+	 * 
+	 * @param pathFinderFactory
+	 *            creates the {@code EscapePathFinder} for the escape
+	 */
+	public Explorer(Function<EscapeState, EscapePathFinder> pathFinderFactory) {
+		this.pathFinderFactory = pathFinderFactory;
+	}
+
+	/**
+	 * Set the time the {@code EscapePathFinder} may spend planning the escape
+	 * 
+	 * @param millis
+	 *            the planning budget in milliseconds
+	 */
+	public void setPlanningBudget(long millis) {
+		planningBudgetInMillis = millis;
+	}
+
+	/**
+	 * Set how many threads the {@code EscapePathFinder} may plan the escape
+	 * with, as when several games are played at once and share the processors
+	 *
+	 * @param threads
+	 *            the number of threads, at least 1
+	 * @throws IllegalArgumentException
+	 *             if {@code threads} is less than 1
+	 */
+	public void setPlanningThreads(int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("threads must be at least 1");
+		}
+		planningThreads = threads;
+	}
+
+	/**
+	 * Set whether the {@code Explorer} and its {@code EscapePathFinder} play
+	 * without printing anything, as when many games are played at once
+	 *
+	 * @param quiet
+	 *            true if nothing must be printed
+	 */
+	public void setQuiet(boolean quiet) {
+		this.quiet = quiet;
+	}
 
 	/**
 	 * Explore the cavern, trying to find the orb in as few steps as possible.
@@ -58,73 +148,216 @@ public class Explorer {
 		}
 		explorationState = state;
 		explorePath = new ArrayList<>();
+		explorePathKeys = new long[64];
+		explorePathIndex = new int[64];
+		explorePathIndexSize = 0;
+		visitedNeighbourIds = new long[64 * ExplorationState.MAX_NEIGHBOURS];
+		visitedNeighbourCounts = new byte[64];
 		ExploreNode exploreNode = new ExploreNode(explorationState.getCurrentLocation(), 0, 0 , explorationState.getDistanceToTarget());
 		explorePath(exploreNode); 
 		return;
 	}
 
+	/*
+	 * Move through the cavern from the given node until the orb is found. At
+	 * each node the best open child is visited next and, if there is none, the
+	 * path is retraced back to the parent. This is a loop rather than recursion
+	 * so that the depth of the search is not limited by the call stack.
+	 * Retracing moves past every ancestor with no open neighbour in one batch
+	 * (see backtrack).
+	 */
 	private void explorePath(ExploreNode exploreNode) {
 
-		if (explorationComplete) {
-			return;
+		while (true) {
+			long currentLocationId = explorationState.getCurrentLocation();
+			long searchNodeId = exploreNode.getId();
+
+			if (currentLocationId != searchNodeId) {
+				explorationState.moveTo(searchNodeId);
+			}
+
+			// Found it
+			int distanceToTarget = explorationState.getDistanceToTarget();
+			if (distanceToTarget == 0) {
+				return;
+			}
+			exploreNode.close();
+
+			int neighbourCount = explorationState.getNeighbours(neighbourIds, neighbourDistances);
+			rememberNeighbours(exploreNode, neighbourCount);
+
+			// Update any open nodes
+			for (int i = 0; i < neighbourCount; i++) {
+				ExploreNode en = getExploreNodeById(neighbourIds[i]);
+				if (en != null && en.isOpen()) {
+					updateExploreNode(en, exploreNode);
+				}
+			}
+
+			// Add the neighbours to the open list
+			for (int i = 0; i < neighbourCount; i++) {
+				long id = neighbourIds[i];
+				if (getExplorePathIndex(id) < 0) {
+					setExplorePathIndex(id, explorePath.size());
+					explorePath.add(new ExploreNode(id, exploreNode.getId(), exploreNode.getgCost() + 1,
+							neighbourDistances[i]));
+				}
+			}
+
+			// Find the best open child to move to. Children are always
+			// neighbours, and ties go to the child found first.
+			ExploreNode best = null;
+			int bestIndex = -1;
+			for (int i = 0; i < neighbourCount; i++) {
+				int index = getExplorePathIndex(neighbourIds[i]);
+				ExploreNode en = explorePath.get(index);
+				if (en.getParentId() != exploreNode.getId() || !en.isOpen()) {
+					continue;
+				}
+				int comparison = best == null ? -1 : explorePathComparator.compare(en, best);
+				if (comparison < 0 || (comparison == 0 && index < bestIndex)) {
+					best = en;
+					bestIndex = index;
+				}
+			}
+
+			// If nowhere to go then retrace path back to parent
+			exploreNode = best != null ? best : backtrack(exploreNode);
 		}
+	}
 
-		long currentLocationId = explorationState.getCurrentLocation();
-		long searchNodeId = exploreNode.getId();
-		
-		if (currentLocationId != searchNodeId) {
-			explorationState.moveTo(searchNodeId);
+	/*
+	 * Retrace the path from the given node, which has no open child, back to
+	 * its parent and on past every ancestor that is sure to have no open child
+	 * either, and return the node where this stops. The moves are made in one
+	 * call to moveAlong. A visited node all of whose neighbours are closed is
+	 * passed over: visiting it again would update and add nothing, find no
+	 * child and move on to its parent, so the steps taken are the same as if
+	 * the path were retraced one node at a time.
+	 */
+	private ExploreNode backtrack(ExploreNode exploreNode) {
+
+		int length = 0;
+		ExploreNode node = getExploreNodeById(exploreNode.getParentId());
+		while (true) {
+			if (length == backtrackRoute.length) {
+				backtrackRoute = Arrays.copyOf(backtrackRoute, 2 * length);
+			}
+			backtrackRoute[length++] = node.getId();
+			if (!isExhausted(node)) {
+				break;
+			}
+			node = getExploreNodeById(node.getParentId());
+		}
+		explorationState.moveAlong(backtrackRoute, length);
+		return node;
+	}
+
+	/*
+	 * Return true if the given node has been visited and all of its
+	 * neighbours are closed
+	 */
+	private boolean isExhausted(ExploreNode exploreNode) {
+
+		int index = getExplorePathIndex(exploreNode.getId());
+		if (index < 0 || visitedNeighbourCounts[index] == 0) {
+			return false;
+		}
+		int start = index * ExplorationState.MAX_NEIGHBOURS;
+		for (int i = start; i < start + visitedNeighbourCounts[index]; i++) {
+			ExploreNode en = getExploreNodeById(visitedNeighbourIds[i]);
+			if (en == null || en.isOpen()) {
+				return false;
+			}
 		}
-				
-		// Found it
-		int distanceToTarget = explorationState.getDistanceToTarget();
-		if (distanceToTarget == 0) {
-			explorationComplete = true;	// Cancel any further exploration
+		return true;
+	}
+
+	/*
+	 * Remember the neighbours of the given node, which are in neighbourIds,
+	 * for isExhausted
+	 */
+	private void rememberNeighbours(ExploreNode exploreNode, int neighbourCount) {
+
+		int index = getExplorePathIndex(exploreNode.getId());
+		if (index < 0) {
 			return;
-		}		
-		exploreNode.close();
-
-		// Update any open nodes
-		explorationState.getNeighbours().stream().filter(ns -> openNodeExists(ns.getId()))
-//				.filter(ns -> getExploreNodeById(ns.getId()).getgCost() > exploreNode.getgCost() + 1)
-				.forEach(ns -> updateExploreNode(getExploreNodeById(ns.getId()), exploreNode));
-
-		// Add the neighbours to the open list
-		explorationState.getNeighbours().stream()
-				.filter(ns -> !nodeExists(ns.getId()))
-				.forEach(ns -> explorePath.add(new ExploreNode(ns.getId(), exploreNode.getId(),
-						exploreNode.getgCost() + 1, ns.getDistanceToTarget())));
-
-		boolean goBack = !explorePath.stream()
-				.filter(en -> en.getParentId() == exploreNode.getId()) 
-				.filter(on -> on.isOpen()).findAny().isPresent();
-		
-		// If nowhere to go then retrace path back to parent..
-		if (goBack) {
-			explorePath(getExploreNodeById(exploreNode.getParentId()));
-		} else {
-			// ...otherwise find the best node to move to
-			explorePath.stream()
-				.filter(en -> en.getParentId() == exploreNode.getId())
-				.filter(en -> en.isOpen())
-				.sorted(explorePathComparator)
-				.forEach(en -> explorePath(en));
 		}
+		if (index >= visitedNeighbourCounts.length) {
+			int capacity = Math.max(index + 1, 2 * visitedNeighbourCounts.length);
+			visitedNeighbourCounts = Arrays.copyOf(visitedNeighbourCounts, capacity);
+			visitedNeighbourIds = Arrays.copyOf(visitedNeighbourIds, capacity * ExplorationState.MAX_NEIGHBOURS);
+		}
+		System.arraycopy(neighbourIds, 0, visitedNeighbourIds, index * ExplorationState.MAX_NEIGHBOURS, neighbourCount);
+		visitedNeighbourCounts[index] = (byte) neighbourCount;
 	}
 
-	private boolean nodeExists(long id) {
+	/*
+	 * Return the node with the given id, or null if it has not been seen yet
+	 */
+	private ExploreNode getExploreNodeById(long id) {
 
-		return explorePath.stream().filter(sn -> sn.getId() == id).findAny().isPresent();
+		int index = getExplorePathIndex(id);
+		return index < 0 ? null : explorePath.get(index);
 	}
 
-	private boolean openNodeExists(long id) {
+	/*
+	 * Return the position of the node with the given id in explorePath, or -1
+	 * if it has not been seen yet
+	 */
+	private int getExplorePathIndex(long id) {
 
-		return explorePath.stream().filter(sn -> sn.getId() == id && sn.isOpen()).findAny().isPresent();
+		int mask = explorePathKeys.length - 1;
+		for (int slot = explorePathSlot(id, mask); explorePathKeys[slot] != 0; slot = (slot + 1) & mask) {
+			if (explorePathKeys[slot] == id + 1) {
+				return explorePathIndex[slot];
+			}
+		}
+		return -1;
 	}
 
-	private ExploreNode getExploreNodeById(long id) {
-		// Assume that existence has already been proved
-		return explorePath.stream().filter(sn -> sn.getId() == id).findFirst().get();
+	/*
+	 * Record the position of the node with the given id, which has not been
+	 * seen yet, in explorePath. The table is doubled when it is half full.
+	 */
+	private void setExplorePathIndex(long id, int index) {
+
+		if (2 * (explorePathIndexSize + 1) > explorePathKeys.length) {
+			long[] keys = explorePathKeys;
+			int[] values = explorePathIndex;
+			explorePathKeys = new long[2 * keys.length];
+			explorePathIndex = new int[2 * keys.length];
+			for (int i = 0; i < keys.length; i++) {
+				if (keys[i] != 0) {
+					putExplorePathIndex(keys[i], values[i]);
+				}
+			}
+		}
+		putExplorePathIndex(id + 1, index);
+		explorePathIndexSize++;
+	}
+
+	/*
+	 * Store the given key (an id plus one) and index in the first free slot
+	 * of its probe sequence
+	 */
+	private void putExplorePathIndex(long key, int index) {
+
+		int mask = explorePathKeys.length - 1;
+		int slot = explorePathSlot(key - 1, mask);
+		while (explorePathKeys[slot] != 0) {
+			slot = (slot + 1) & mask;
+		}
+		explorePathKeys[slot] = key;
+		explorePathIndex[slot] = index;
+	}
+
+	/*
+	 * Return the first slot of the probe sequence of the given id
+	 */
+	private static int explorePathSlot(long id, int mask) {
+
+		return (int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & mask;
 	}
 
 	private void updateExploreNode(ExploreNode targetNode, ExploreNode parentNode) {
@@ -173,12 +406,18 @@ public class Explorer {
 
 		int tGold = state.getVertices().parallelStream().mapToInt(n -> n.getTile().getGold()).sum();
 		// Allow for different plans to be generated
-		EscapePathFinder pathFinder = new StackEscapePathFinder(state);
-//		EscapePathFinder pathFinder = new SimpleEscapePathFinder(state);
+		EscapePathFinder pathFinder = pathFinderFactory.apply(state);
 
-		EscapePath escapePlan = pathFinder.findEscapePath(state);
-		double d = (double) escapePlan.getGold() / (double) tGold;
-		System.out.println(String.format("Collection ratio = %.2f%%", d * 100));
+		PlanningBudget budget = new PlanningBudget(planningBudgetInMillis);
+		budget.setQuiet(quiet);
+		if (planningThreads > 0) {
+			budget.setWorkers(planningThreads);
+		}
+		EscapePath escapePlan = pathFinder.findEscapePath(state, budget);
+		if (!quiet) {
+			double d = (double) escapePlan.getGold() / (double) tGold;
+			System.out.println(String.format("Collection ratio = %.2f%%", d * 100));
+		}
 		implementEscapePlan(escapePlan);
 	}
 	
@@ -188,17 +427,7 @@ public class Explorer {
 //			System.out.println(String.format("Move to r%d:c%d - %d", n.getTile().getRow(), n.getTile().getColumn(), n.getId()));
 //		}
 
-		escapePlan.getPath().stream().forEach(e -> followPath(e));
-	}
-
-	private void followPath(Node n) {
-
-		// Pick up any gold before moving on
-		if (escapeState.getCurrentNode().getTile().getGold() > 0) {
-			escapeState.pickUpGold();
-		}
-		if (!n.equals(escapeState.getCurrentNode())) {
-			escapeState.moveTo(n);
-		}
+		// Move along the whole path in one call, picking up gold on the way
+		escapeState.follow(escapePlan.getPath(), true);
 	}
 }
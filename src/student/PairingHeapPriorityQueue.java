@@ -0,0 +1,216 @@
+package student;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * An instance is a priority queue of elements of type E implemented as a pairing heap.
+ * <p>
+ * add and lowering a priority take constant time: the new or changed node is simply
+ * melded with the root. poll takes O(log N) amortized time, using the standard two-pass
+ * pairing of the root's children. Raising a priority removes the node and adds it again.
+ * This suits searches with many adds and priority decreases but relatively few polls.
+ */
+public class PairingHeapPriorityQueue<E> implements PriorityQueue<E> {
+
+    private int size; // number of elements in the priority queue
+    private HeapNode<E> root;
+    private final HashMap<E, HeapNode<E>> map = new HashMap<>();
+    /** Scratch list for the first pass of pairing, kept to avoid reallocation. */
+    private final ArrayList<HeapNode<E>> pairs = new ArrayList<>();
+
+    /**
+     * Constructor: an empty heap.
+     */
+    public PairingHeapPriorityQueue() {
+    }
+
+    /**
+     * Return a string that gives this priority queue, in the format:
+     * [item0:priority0, item1:priority1, ..., item(N-1):priority(N-1)]
+     */
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder();
+        for (HeapNode<E> n : map.values()) {
+            if (s.length() > 0) {
+                s.append(", ");
+            }
+            s.append(n.element + ":" + n.priority);
+        }
+        return "[" + s.toString() + "]";
+    }
+
+    /**
+     * Return the number of elements in the priority queue.
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Add e with priority p to the priority queue.
+     * Throw an illegalArgumentException if e is already in the queue.
+     */
+    @Override
+    public void add(E e, double p) throws IllegalArgumentException {
+        if (map.containsKey(e)) {
+            throw new IllegalArgumentException("e is already in priority queue");
+        }
+        HeapNode<E> n = new HeapNode<>(e, p);
+        map.put(e, n);
+        root = meld(root, n);
+        size++;
+    }
+
+    /**
+     * Return the element of the priority queue with lowest priority, without changing the queue.
+     * Throw a PriorityQueueException if the priority queue is empty.
+     */
+    @Override
+    public E peek() {
+        if (root == null) {
+            throw new PriorityQueueException("priority queue is empty");
+        }
+        return root.element;
+    }
+
+    /**
+     * Remove and return the element of the priority queue with lowest priority.
+     * Throw a PriorityQueueException if the priority queue is empty.
+     */
+    @Override
+    public E poll() {
+        E val = peek();
+        map.remove(val);
+        root = mergeChildren(root);
+        size--;
+        return val;
+    }
+
+    /**
+     * Change the priority of element e to p.
+     * Throw an illegalArgumentException if e is not in the priority queue.
+     */
+    @Override
+    public void updatePriority(E e, double p) {
+        HeapNode<E> n = map.get(e);
+        if (n == null) {
+            throw new IllegalArgumentException();
+        }
+        if (p < n.priority) {
+            n.priority = p;
+            if (n != root) {
+                cut(n);
+                root = meld(root, n);
+            }
+        } else if (p > n.priority) {
+            if (n == root) {
+                root = mergeChildren(n);
+            } else {
+                cut(n);
+                root = meld(root, mergeChildren(n));
+            }
+            n.priority = p;
+            root = meld(root, n);
+        }
+    }
+
+    /**
+     * Return the root of the heap made by melding the heaps rooted at a and b.
+     * Either may be null. Precondition: a and b are roots (no parent and no siblings).
+     */
+    private static <E> HeapNode<E> meld(HeapNode<E> a, HeapNode<E> b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        if (b.priority < a.priority) {
+            HeapNode<E> t = a;
+            a = b;
+            b = t;
+        }
+        // b becomes the leftmost child of a.
+        b.prev = a;
+        b.sibling = a.child;
+        if (a.child != null) {
+            a.child.prev = b;
+        }
+        a.child = b;
+        return a;
+    }
+
+    /**
+     * Detach n, with its subtree, from its parent and siblings.
+     * Precondition: n is not the root.
+     */
+    private static <E> void cut(HeapNode<E> n) {
+        if (n.prev.child == n) {
+            n.prev.child = n.sibling;
+        } else {
+            n.prev.sibling = n.sibling;
+        }
+        if (n.sibling != null) {
+            n.sibling.prev = n.prev;
+        }
+        n.prev = null;
+        n.sibling = null;
+    }
+
+    /**
+     * Detach the children of n and return the root of the heap made by pairing them,
+     * or null if n has no children. This is iterative, so it cannot overflow the stack.
+     */
+    private HeapNode<E> mergeChildren(HeapNode<E> n) {
+        HeapNode<E> a = n.child;
+        n.child = null;
+        if (a == null) {
+            return null;
+        }
+        a.prev = null;
+        // First pass: meld the children in pairs from left to right.
+        pairs.clear();
+        while (a != null) {
+            HeapNode<E> b = a.sibling;
+            HeapNode<E> next = b == null ? null : b.sibling;
+            a.sibling = null;
+            a.prev = null;
+            if (b != null) {
+                b.sibling = null;
+                b.prev = null;
+            }
+            pairs.add(meld(a, b));
+            a = next;
+        }
+        // Second pass: meld the pairs from right to left.
+        HeapNode<E> result = pairs.get(pairs.size() - 1);
+        for (int i = pairs.size() - 2; i >= 0; i--) {
+            result = meld(pairs.get(i), result);
+        }
+        pairs.clear();
+        return result;
+    }
+
+    /**
+     * An instance is a node of the heap. prev is the parent of a leftmost child and the
+     * left sibling of any other node.
+     */
+    private static class HeapNode<E> {
+        private final E element;
+        private double priority;
+        private HeapNode<E> child;
+        private HeapNode<E> sibling;
+        private HeapNode<E> prev;
+
+        /**
+         * Constructor: a node for element e with priority p.
+         */
+        private HeapNode(E e, double p) {
+            element = e;
+            priority = p;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package student;
+
+import java.util.function.Consumer;
+
+/**
+ * The terms on which an {@code EscapePathFinder} plans: a deadline, a flag
+ * the caller can set to cancel planning early, an optional listener that is
+ * told of every improved plan as it is found, how many threads the finder
+ * may search with and whether it may print. A finder stops planning soon after {@code isExhausted()} becomes
+ * true and returns the best plan it has found, which is always a valid
+ * escape.
+ */
+public final class PlanningBudget {
+
+	/**
+	 * The planning time, in milliseconds, used when none is chosen
+	 */
+	public static final long DEFAULT_MILLIS = 10000;
+
+	// Deadline, in System.nanoTime() terms
+	private final long deadline;
+	// Told of each improved plan, or null
+	private final Consumer<EscapePath> listener;
+	private volatile boolean cancelled;
+	private boolean quiet;
+	private int workers = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Constructor for a budget that expires the given time from now
+	 *
+	 * @param millis
+	 *            the planning time in milliseconds
+	 */
+	public PlanningBudget(long millis) {
+		this(millis, null);
+	}
+
+	/**
+	 * Constructor for a budget that expires the given time from now and
+	 * publishes each improved plan
+	 *
+	 * @param millis
+	 *            the planning time in milliseconds
+	 * @param listener
+	 *            called with each improved plan, from the planning threads,
+	 *            so it must be quick and thread safe; may be null
+	 */
+	public PlanningBudget(long millis, Consumer<EscapePath> listener) {
+		deadline = System.nanoTime() + Math.max(millis, 0) * 1000000;
+		this.listener = listener;
+	}
+
+	/**
+	 * Ask the finder to stop planning and return the best plan found so far.
+	 * This may be called from any thread.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * Whether planning has been cancelled
+	 *
+	 * @return true if {@code cancel()} has been called
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Set whether the finder must plan without printing anything, as when
+	 * many games are played at once
+	 *
+	 * @param quiet
+	 *            true if the finder must not print
+	 */
+	public void setQuiet(boolean quiet) {
+		this.quiet = quiet;
+	}
+
+	/**
+	 * Whether the finder must plan without printing anything
+	 *
+	 * @return true if the finder must not print
+	 */
+	public boolean isQuiet() {
+		return quiet;
+	}
+
+	/**
+	 * Set how many threads a finder that searches concurrently may use, for
+	 * example 1 when many games are planned at once. Initially it is the
+	 * number of available processors.
+	 *
+	 * @param workers
+	 *            the number of threads, at least 1
+	 * @throws IllegalArgumentException
+	 *             if {@code workers} is less than 1
+	 */
+	public void setWorkers(int workers) {
+		if (workers < 1) {
+			throw new IllegalArgumentException("workers must be at least 1");
+		}
+		this.workers = workers;
+	}
+
+	/**
+	 * The number of threads a finder that searches concurrently may use
+	 *
+	 * @return the number of threads, at least 1
+	 */
+	public int getWorkers() {
+		return workers;
+	}
+
+	/**
+	 * Whether planning should stop
+	 *
+	 * @return true if the deadline has passed or planning has been cancelled
+	 */
+	public boolean isExhausted() {
+		return cancelled || System.nanoTime() - deadline >= 0;
+	}
+
+	/**
+	 * The planning time left
+	 *
+	 * @return the milliseconds until the deadline, 0 if it has passed or
+	 *         planning has been cancelled
+	 */
+	public long remainingMillis() {
+		return cancelled ? 0 : Math.max((deadline - System.nanoTime()) / 1000000, 0);
+	}
+
+	/**
+	 * Tell the listener, if there is one, of an improved plan
+	 *
+	 * @param plan
+	 *            the new best plan, a valid escape
+	 */
+	void publish(EscapePath plan) {
+		if (listener != null) {
+			listener.accept(plan);
+		}
+	}
+}
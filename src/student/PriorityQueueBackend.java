@@ -0,0 +1,72 @@
+package student;
+
+import java.util.Locale;
+
+/**
+ * The implementations of PriorityQueue, each of which can create empty queues.
+ * <p>
+ * BINARY is the original PriorityQueueImpl. DARY and PAIRING accept any priorities.
+ * RADIX is usually fastest, but only for monotone integer priorities, such as the path
+ * lengths of Dijkstra's algorithm or A* with a consistent heuristic over integer edge
+ * lengths; see RadixHeapPriorityQueue.
+ */
+public enum PriorityQueueBackend {
+    BINARY {
+        @Override
+        public <E> PriorityQueue<E> create() {
+            return new PriorityQueueImpl<>();
+        }
+    },
+    DARY {
+        @Override
+        public <E> PriorityQueue<E> create() {
+            return new DaryHeapPriorityQueue<>();
+        }
+    },
+    PAIRING {
+        @Override
+        public <E> PriorityQueue<E> create() {
+            return new PairingHeapPriorityQueue<>();
+        }
+    },
+    RADIX {
+        @Override
+        public <E> PriorityQueue<E> create() {
+            return new RadixHeapPriorityQueue<>();
+        }
+
+        @Override
+        public boolean requiresMonotoneIntegers() {
+            return true;
+        }
+    };
+
+    /**
+     * Return a new, empty priority queue of this kind.
+     */
+    public abstract <E> PriorityQueue<E> create();
+
+    /**
+     * Return true iff queues of this kind accept only non-negative integer priorities
+     * no less than that of the last element polled.
+     */
+    public boolean requiresMonotoneIntegers() {
+        return false;
+    }
+
+    /**
+     * Return the fastest kind of queue for priorities that are monotone integers
+     * if monotoneIntegers is true, and for arbitrary priorities otherwise.
+     */
+    public static PriorityQueueBackend choose(boolean monotoneIntegers) {
+        return monotoneIntegers ? RADIX : DARY;
+    }
+
+    /**
+     * Return the backend whose name is name, ignoring case.
+     * Throw an IllegalArgumentException if there is none.
+     */
+    public static PriorityQueueBackend forName(String name) {
+        return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,232 @@
+package student;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * An instance is a priority queue of elements of type E implemented as a radix heap,
+ * for monotone integer priorities such as the path lengths of Dijkstra's algorithm.
+ * <p>
+ * Priorities must be non-negative integers, and no priority may be less than that of the
+ * last element polled. Elements are kept in 65 buckets relative to a base, which is the
+ * priority of the last element polled or, once a peek or poll has had to look for the lowest
+ * priority, that priority: bucket 0 holds the priorities equal to the base, and bucket i > 0
+ * holds those whose highest bit that differs from it is bit i-1. When bucket 0 is empty, peek
+ * and poll empty the first non-empty bucket into lower ones, and each element moves down at
+ * most 64 times in total, so add, updatePriority and poll take O(1), O(1) and O(log C)
+ * amortized time, where C is the largest priority. A priority below the base (possible only
+ * after a peek) lowers the base back to that of the last element polled, which takes O(n)
+ * time once per peek.
+ */
+public class RadixHeapPriorityQueue<E> implements PriorityQueue<E> {
+
+    private static final int BUCKETS = 65;
+
+    private int size; // number of elements in the priority queue
+    private long last; // the priority of the last element polled
+    private long base; // the priority of the elements in bucket 0, at least last
+    private final ArrayList<ArrayList<Entry<E>>> buckets = new ArrayList<>(BUCKETS);
+    private final HashMap<E, Entry<E>> map = new HashMap<>();
+    /** An empty list that redistribute swaps with the bucket it empties, to avoid copying it. */
+    private ArrayList<Entry<E>> spare = new ArrayList<>();
+
+    /**
+     * Constructor: an empty heap.
+     */
+    public RadixHeapPriorityQueue() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Return a string that gives this priority queue, in the format:
+     * [item0:priority0, item1:priority1, ..., item(N-1):priority(N-1)]
+     */
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder();
+        for (ArrayList<Entry<E>> bucket : buckets) {
+            for (Entry<E> entry : bucket) {
+                if (s.length() > 0) {
+                    s.append(", ");
+                }
+                s.append(entry.element + ":" + (double) entry.key);
+            }
+        }
+        return "[" + s.toString() + "]";
+    }
+
+    /**
+     * Return the number of elements in the priority queue.
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Add e with priority p to the priority queue.
+     * Throw an illegalArgumentException if e is already in the queue, or if p is not an integer
+     * or is less than the priority of the last element polled.
+     */
+    @Override
+    public void add(E e, double p) throws IllegalArgumentException {
+        if (map.containsKey(e)) {
+            throw new IllegalArgumentException("e is already in priority queue");
+        }
+        Entry<E> entry = new Entry<>(e, toKey(p));
+        map.put(e, entry);
+        insert(entry);
+        size++;
+    }
+
+    /**
+     * Return the element of the priority queue with lowest priority, without changing its contents.
+     * Throw a PriorityQueueException if the priority queue is empty.
+     */
+    @Override
+    public E peek() {
+        if (size == 0) {
+            throw new PriorityQueueException("priority queue is empty");
+        }
+        ArrayList<Entry<E>> bucket = buckets.get(0);
+        if (bucket.isEmpty()) {
+            redistribute();
+        }
+        return bucket.get(bucket.size() - 1).element;
+    }
+
+    /**
+     * Remove and return the element of the priority queue with lowest priority.
+     * Throw a PriorityQueueException if the priority queue is empty.
+     */
+    @Override
+    public E poll() {
+        E val = peek();
+        Entry<E> entry = map.remove(val);
+        remove(entry);
+        last = entry.key;
+        size--;
+        return val;
+    }
+
+    /**
+     * Change the priority of element e to p.
+     * Throw an illegalArgumentException if e is not in the priority queue, or if p is not an
+     * integer or is less than the priority of the last element polled.
+     */
+    @Override
+    public void updatePriority(E e, double p) {
+        Entry<E> entry = map.get(e);
+        if (entry == null) {
+            throw new IllegalArgumentException();
+        }
+        long key = toKey(p);
+        remove(entry);
+        entry.key = key;
+        insert(entry);
+    }
+
+    /**
+     * Return p as a key, throwing an IllegalArgumentException if p is not an integer
+     * at least the priority of the last element polled.
+     */
+    private long toKey(double p) {
+        long key = (long) p;
+        if (key != p || key < last) {
+            throw new IllegalArgumentException("priority must be an integer no less than " + last);
+        }
+        return key;
+    }
+
+    /**
+     * Return the bucket for key.
+     */
+    private int bucketOf(long key) {
+        return key == base ? 0 : 64 - Long.numberOfLeadingZeros(key ^ base);
+    }
+
+    /**
+     * Add entry to the end of its bucket, first lowering the base to last if the key of
+     * entry is below it.
+     */
+    private void insert(Entry<E> entry) {
+        if (entry.key < base) {
+            rebase();
+        }
+        entry.bucket = bucketOf(entry.key);
+        ArrayList<Entry<E>> bucket = buckets.get(entry.bucket);
+        entry.index = bucket.size();
+        bucket.add(entry);
+    }
+
+    /**
+     * Remove entry from its bucket, moving the last entry of the bucket into its place.
+     */
+    private void remove(Entry<E> entry) {
+        ArrayList<Entry<E>> bucket = buckets.get(entry.bucket);
+        Entry<E> moved = bucket.remove(bucket.size() - 1);
+        if (moved != entry) {
+            bucket.set(entry.index, moved);
+            moved.index = entry.index;
+        }
+    }
+
+    /**
+     * Make base last and move every entry to the bucket it then belongs in.
+     */
+    private void rebase() {
+        base = last;
+        ArrayList<Entry<E>> entries = new ArrayList<>(size);
+        for (ArrayList<Entry<E>> bucket : buckets) {
+            entries.addAll(bucket);
+            bucket.clear();
+        }
+        for (Entry<E> entry : entries) {
+            insert(entry);
+        }
+    }
+
+    /**
+     * Make base the smallest key in the first non-empty bucket and move every entry of
+     * that bucket to the bucket it now belongs in, which is lower.
+     * Precondition: bucket 0 is empty and the queue is not.
+     */
+    private void redistribute() {
+        int i = 1;
+        while (buckets.get(i).isEmpty()) {
+            i++;
+        }
+        ArrayList<Entry<E>> bucket = buckets.get(i);
+        long min = Long.MAX_VALUE;
+        for (Entry<E> entry : bucket) {
+            min = Math.min(min, entry.key);
+        }
+        base = min;
+        buckets.set(i, spare);
+        for (Entry<E> entry : bucket) {
+            insert(entry);
+        }
+        bucket.clear();
+        spare = bucket;
+    }
+
+    /**
+     * An instance contains an element of the heap with its key and position among the buckets.
+     */
+    private static class Entry<E> {
+        private final E element;
+        private long key;
+        private int bucket;
+        private int index;
+
+        /**
+         * Constructor: an instance for element e with key k.
+         */
+        private Entry(E e, long k) {
+            element = e;
+            key = k;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package student;
+
+import java.util.Comparator;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A concurrent priority frontier for a search run by several workers: a
+ * relaxed multi-queue. Elements are spread over twice as many sorted queues
+ * as there are workers, each with its own lock. An element is added to a
+ * random queue, and a poll takes the better of the first elements of two
+ * random queues, so workers rarely contend for a lock and polls return one
+ * of the best elements rather than always the best. With a single worker
+ * there is a single queue and polls are exact.
+ * <p>
+ * The frontier also detects quiescence. An element counts as outstanding
+ * from when it is added until the worker that took it calls
+ * {@code finished()}, so the search is over exactly when nothing is
+ * outstanding: the queues are empty and no worker can add anything more.
+ * <p>
+ * As in a {@code TreeSet}, an element that the comparator finds equal to one
+ * already in its queue is not added.
+ *
+ * @param <E>
+ *            the type of the elements
+ */
+class RelaxedFrontier<E> {
+
+	// Queues per worker
+	private static final int QUEUES_PER_WORKER = 2;
+	// Failed polls a waiting worker spins through before it starts to park
+	private static final int SPINS = 64;
+	// Longest a waiting worker parks before it checks again
+	private static final long MAX_PARK_NANOS = 200000;
+
+	private final Comparator<? super E> comparator;
+	private final SubQueue<E>[] queues;
+	// Elements added and not yet finished, whether queued or being worked on
+	private final AtomicInteger outstanding = new AtomicInteger();
+
+	/**
+	 * Constructor for an empty frontier
+	 *
+	 * @param workers
+	 *            the number of workers that will use it
+	 * @param comparator
+	 *            orders the elements, best first
+	 */
+	@SuppressWarnings("unchecked")
+	RelaxedFrontier(int workers, Comparator<? super E> comparator) {
+		this.comparator = comparator;
+		int n = workers <= 1 ? 1 : QUEUES_PER_WORKER * workers;
+		queues = (SubQueue<E>[]) new SubQueue<?>[n];
+		for (int i = 0; i < n; i++) {
+			queues[i] = new SubQueue<>(comparator);
+		}
+	}
+
+	/**
+	 * Add an element, which is outstanding until a worker has taken it and
+	 * called {@code finished()}. Only the first caller and workers that are
+	 * working on an element may add elements.
+	 *
+	 * @param e
+	 *            the element
+	 */
+	void add(E e) {
+		outstanding.incrementAndGet();
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		while (true) {
+			SubQueue<E> q = queues[random.nextInt(queues.length)];
+			if (q.lock.tryLock()) {
+				try {
+					if (!q.set.add(e)) {
+						// A duplicate is never taken, so it is finished at once
+						outstanding.decrementAndGet();
+					}
+					q.top = q.set.first();
+				} finally {
+					q.lock.unlock();
+				}
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Record that the element a worker took last has been dealt with
+	 */
+	void finished() {
+		outstanding.decrementAndGet();
+	}
+
+	/**
+	 * Take one of the best elements, waiting while the queues are empty but
+	 * other workers may still add to them
+	 *
+	 * @param budget
+	 *            the budget of the search; waiting stops once it is exhausted
+	 * @return an element, or null if the search is over (nothing is
+	 *         outstanding) or the budget is exhausted
+	 */
+	E take(PlanningBudget budget) {
+		int misses = 0;
+		while (true) {
+			E e = poll();
+			if (e != null) {
+				return e;
+			}
+			if (outstanding.get() == 0 || budget.isExhausted()) {
+				return null;
+			}
+			if (++misses < SPINS) {
+				Thread.yield();
+			} else {
+				LockSupport.parkNanos(Math.min(MAX_PARK_NANOS, 1000L << Math.min(misses - SPINS, 8)));
+			}
+		}
+	}
+
+	/**
+	 * Take the better first element of two random queues, or of the first
+	 * non-empty queue if both are empty
+	 *
+	 * @return an element, or null if every queue is empty
+	 */
+	private E poll() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		while (true) {
+			SubQueue<E> q = queues[random.nextInt(queues.length)];
+			if (queues.length > 1) {
+				SubQueue<E> r = queues[random.nextInt(queues.length)];
+				E qTop = q.top;
+				E rTop = r.top;
+				if (qTop == null || (rTop != null && comparator.compare(rTop, qTop) < 0)) {
+					q = r;
+				}
+			}
+			if (q.top == null) {
+				q = firstNonEmpty();
+				if (q == null) {
+					return null;
+				}
+			}
+			if (q.lock.tryLock()) {
+				try {
+					E e = q.set.pollFirst();
+					q.top = q.set.isEmpty() ? null : q.set.first();
+					if (e != null) {
+						return e;
+					}
+				} finally {
+					q.lock.unlock();
+				}
+			}
+		}
+	}
+
+	/**
+	 * A queue that held an element when it was looked at, or null if none did
+	 */
+	private SubQueue<E> firstNonEmpty() {
+		for (SubQueue<E> q : queues) {
+			if (q.top != null) {
+				return q;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * The number of queued elements, which is only a snapshot while workers
+	 * are running
+	 *
+	 * @return the number of elements in the queues
+	 */
+	int size() {
+		int size = 0;
+		for (SubQueue<E> q : queues) {
+			q.lock.lock();
+			try {
+				size += q.set.size();
+			} finally {
+				q.lock.unlock();
+			}
+		}
+		return size;
+	}
+
+	/*
+	 * One of the queues: a sorted set, its lock, and its first element
+	 * published for lock-free peeking
+	 */
+	private static final class SubQueue<E> {
+		private final TreeSet<E> set;
+		private final ReentrantLock lock = new ReentrantLock();
+		private volatile E top;
+
+		SubQueue(Comparator<? super E> comparator) {
+			set = new TreeSet<>(comparator);
+		}
+	}
+}
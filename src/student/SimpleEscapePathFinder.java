@@ -20,9 +20,6 @@ public class SimpleEscapePathFinder extends AbstractEscapePathFinder {
 	private Node exit;
 	private Node exitCovering;
 
-	// Control variables
-	private long timeout; // Elapsed time of exit planning
-
 	// Comparator for evaluating exit paths
 	private Comparator<Edge> escapePathComparator = (e1, e2) -> escapePathComparator(e1, e2);
 
@@ -31,7 +28,7 @@ public class SimpleEscapePathFinder extends AbstractEscapePathFinder {
 	}
 
 	@Override
-	public EscapePath findEscapePath(EscapeState state) {
+	public EscapePath findEscapePath(EscapeState state, PlanningBudget budget) {
 
 		escapeState = state;
 		exit = state.getExit();
@@ -39,19 +36,20 @@ public class SimpleEscapePathFinder extends AbstractEscapePathFinder {
 		exitCovering = exit.getNeighbours().stream().findFirst().get();
 
 		// Set the shortest escape route as a default
-		escapePath = new ShortestEscapePathFinder(state).findEscapePath(escapeState);
+		startPlanning(budget, new ShortestEscapePathFinder(state).findEscapePath(escapeState));
 
-		// Start at the current node and process until timeout expires or all
-		// options explored
-		timeout = System.currentTimeMillis() + this.MAX_TIME_IN_MS;
+		// Start at the current node and process until the budget is exhausted
+		// or all options explored
 		buildEscapePaths(new EscapePath(state.getCurrentNode()));
-		System.out.println(String.format("%d additional paths found", numberOfPathsFound));
+		if (!budget.isQuiet()) {
+			System.out.println(String.format("%d additional paths found", numberOfPathsFound));
+		}
 		return escapePath;
 	}
 
 	private void buildEscapePaths(EscapePath p) {
 
-		if (System.currentTimeMillis() > timeout) {
+		if (budget.isExhausted()) {
 			return;
 		}
 
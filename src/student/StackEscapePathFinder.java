@@ -1,15 +1,13 @@
 package student;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
-import java.util.SortedSet;
-import java.util.TreeSet;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -22,22 +20,18 @@ import game.Node;
 /**
  * Multi-threaded Path finder which uses the shortest path as a base. New paths
  * are created by iterating from the current node and stacked. Each thread pops
- * the best available incomplete {@code EscapePath} and pursues it until it is
- * no longer viable.
+ * one of the best available incomplete {@code EscapePath}s and pursues it until
+ * it is no longer viable. The stack is a {@code RelaxedFrontier}, so the search
+ * ends as soon as it is empty and every thread is idle.
  */
 public class StackEscapePathFinder extends AbstractEscapePathFinder {
 
 	private Node exit;
 
-	private long timeout; // Elapsed time of exit planning
-
-	// Wait time for empty stack reads
-	private final int STACK_TIMEOUT_IN_MILLIS = 100;
-	// Maximum number of stack misses before abandoning thread
-	private final int MAX_STACK_MISSES = 3;
-
-	// A use a sorted set to provide a stack
-	private SortedSet<EscapePath> stack;
+	// The incomplete paths, best first
+	private RelaxedFrontier<EscapePath> stack;
+	// The number of search threads
+	private int maxThreads;
 
 	// The shortest path is used as the basis for much of the path completion
 	private EscapePath shortestEscapePath;
@@ -48,8 +42,8 @@ public class StackEscapePathFinder extends AbstractEscapePathFinder {
 	// Dead-end nodes that we need to ignore
 	private Set<Node> closedNodes;
 
-	// Weighted gold values for each node
-	private Map<Node, Integer> goldValues;
+	// Weighted gold values for each node, indexed by node id
+	private int[] goldValues;
 
 	public StackEscapePathFinder(EscapeState state) {
 
@@ -57,12 +51,12 @@ public class StackEscapePathFinder extends AbstractEscapePathFinder {
 	}
 
 	@Override
-	public EscapePath findEscapePath(EscapeState state) {
+	public EscapePath findEscapePath(EscapeState state, PlanningBudget budget) {
 
 		escapeState = state;
 		exit = state.getExit();
 		// Get the shortest route out as a fall back
-		escapePath = new ShortestEscapePathFinder(state).findEscapePath(escapeState);
+		startPlanning(budget, new ShortestEscapePathFinder(state).findEscapePath(escapeState));
 		shortestEscapePath = escapePath;
 
 		// Set up the shortest path from the start node to the exit
@@ -71,17 +65,17 @@ public class StackEscapePathFinder extends AbstractEscapePathFinder {
 		shortTestPathCompletionGold = escapePath.getGold() - state.getCurrentNode().getTile().getGold();
 		shortestPathLength = escapePath.getLength();
 
-		// Allow ourselves n-seconds to formulate a plan
-		timeout = System.currentTimeMillis() + MAX_TIME_IN_MS / 1;
-
 		// Pre-processing tasks
 		setUpTasks(state);
 
 		// Formulate the plan
+		maxThreads = budget.getWorkers();
 		populateStack();
 		buildEscapePaths();
 
-		System.out.println(String.format("%d additional paths found, %d incomplete", numberOfPathsFound, stack.size()));
+		if (!budget.isQuiet()) {
+			System.out.println(String.format("%d additional paths found, %d incomplete", numberOfPathsFound, stack.size()));
+		}
 		return escapePath;
 	}
 
@@ -98,7 +92,7 @@ public class StackEscapePathFinder extends AbstractEscapePathFinder {
 				.collect(Collectors.toSet()).stream().forEach(dn -> closedNodeSetter(dn));
 
 		// Get the weighted gold values for all the nodes
-		goldValues = new HashMap<>();
+		goldValues = new int[state.getVertices().size()];
 		state.getVertices().parallelStream().forEach(n -> weightedGoldValueSetter(n));
 	}
 
@@ -106,15 +100,22 @@ public class StackEscapePathFinder extends AbstractEscapePathFinder {
 	 * The closed node set is initially populated with Nodes that only have one
 	 * exit and no gold. These are expanded into those neighbour nodes with 2
 	 * exits and no gold. This has the effect of closing off dead ends that have
-	 * no gold
+	 * no gold. A work list is used rather than recursion as dead ends in large
+	 * caverns can be longer than the call stack allows
 	 */
-	private synchronized void closedNodeSetter(Node n) {
-
-		if (n.equals(escapeState.getCurrentNode()) || n.getTile().getGold() != 0 || n.getNeighbours().size() > 2) {
-			return;
+	private synchronized void closedNodeSetter(Node start) {
+
+		Deque<Node> pending = new ArrayDeque<>();
+		pending.push(start);
+		while (!pending.isEmpty()) {
+			Node n = pending.pop();
+			if (closedNodes.contains(n) || n.equals(escapeState.getCurrentNode()) || n.getTile().getGold() != 0
+					|| n.getNeighbours().size() > 2) {
+				continue;
+			}
+			closedNodes.add(n);
+			n.getNeighbours().stream().filter(nn -> !closedNodes.contains(nn)).forEach(nn -> pending.push(nn));
 		}
-		closedNodes.add(n);
-		n.getNeighbours().stream().filter(nn -> !closedNodes.contains(nn)).forEach(nn -> closedNodeSetter(nn));
 	}
 
 	/*
@@ -127,7 +128,7 @@ public class StackEscapePathFinder extends AbstractEscapePathFinder {
 		for (Node neighbour : n.getNeighbours()) {
 			neighbouringGoldValue += neighbour.getTile().getGold() / 2;
 		}
-		goldValues.put(n, n.getTile().getGold() + neighbouringGoldValue);
+		goldValues[(int) n.getId()] = n.getTile().getGold() + neighbouringGoldValue;
 	}
 
 	/*
@@ -135,8 +136,7 @@ public class StackEscapePathFinder extends AbstractEscapePathFinder {
 	 */
 	private void populateStack() {
 
-		stack = Collections.synchronizedSortedSet(new TreeSet<>(new EscapePathOrderComparator()));
-		// stack = new LinkedBlockingDeque<>();
+		stack = new RelaxedFrontier<>(maxThreads, new EscapePathOrderComparator());
 
 		Node n = escapeState.getCurrentNode();
 		EscapePath p = new EscapePath(n);
@@ -145,27 +145,10 @@ public class StackEscapePathFinder extends AbstractEscapePathFinder {
 	}
 
 	/*
-	 * Although the stack is actually thread safe, taking an item from an empty
-	 * collection throws an exception. I do an isEmpty() consistency check
-	 * beforehand but with multiple threads the status of the collection can
-	 * change between isEmpty() and first() so access is wrapped in this method
-	 * to provide transactional safety
-	 */
-	synchronized private EscapePath removeFromStack() {
-
-		EscapePath returnPath = stack.isEmpty() ? null : stack.first();
-		if (returnPath != null) {
-			stack.remove(returnPath);
-		}
-		return returnPath;
-	}
-
-	/*
-	 * Use all available threads
+	 * Use as many threads as the budget allows
 	 */
 	private void buildEscapePaths() {
 
-		int maxThreads = Runtime.getRuntime().availableProcessors();
 		List<SearchThread> threads = new ArrayList<>(maxThreads);
 		for (int i = 0; i < maxThreads; i++) {
 			threads.add(new SearchThread());
@@ -174,7 +157,9 @@ public class StackEscapePathFinder extends AbstractEscapePathFinder {
 		try {
 			pool.invokeAll(threads);
 		} catch (InterruptedException e) {
-			e.printStackTrace();
+			if (!budget.isQuiet()) {
+				e.printStackTrace();
+			}
 		}
 		pool.shutdown();
 	}
@@ -197,14 +182,18 @@ public class StackEscapePathFinder extends AbstractEscapePathFinder {
 		@Override
 		public Object call() {
 
-			EscapePath p = getNextPath();
+			EscapePath p = stack.take(budget);
 			if (p == null) {
 				return null;
 			}
 			try {
 				processPath(p);
 			} catch (Throwable t) {
-				t.printStackTrace();
+				// The path being processed will never be finished otherwise
+				stack.finished();
+				if (!budget.isQuiet()) {
+					t.printStackTrace();
+				}
 			}
 			return null;
 		}
@@ -219,7 +208,7 @@ public class StackEscapePathFinder extends AbstractEscapePathFinder {
 			// Used a while loop as recursion ran into stack problems
 			while (p != null) {
 
-				if (System.currentTimeMillis() > timeout) {
+				if (budget.isExhausted()) {
 					return;
 				}
 
@@ -312,8 +301,7 @@ public class StackEscapePathFinder extends AbstractEscapePathFinder {
 		}
 
 		/*
-		 * Not currently sync'd but as it's an atomic method then the SortedTree
-		 * can take care of it
+		 * Push an incomplete path for any thread to pursue
 		 */
 		private void stackPath(EscapePath p) {
 
@@ -353,24 +341,15 @@ public class StackEscapePathFinder extends AbstractEscapePathFinder {
 		}
 
 		/*
-		 * Collect the highest value unresolved path. See notes above on
-		 * synchronization
+		 * Finish with the path being pursued and collect one of the highest
+		 * value unresolved paths, waiting while other threads may still stack
+		 * some. Return null once there are none left or the budget is
+		 * exhausted
 		 */
 		private EscapePath getNextPath() {
 
-			EscapePath returnPath = removeFromStack();
-			int retries = 0;
-			// Try sleeping and looping until timeout
-			while (MAX_STACK_MISSES > retries++ && returnPath == null && System.currentTimeMillis() < timeout) {
-				try {
-					Thread.sleep(STACK_TIMEOUT_IN_MILLIS);
-					returnPath = removeFromStack();
-				} catch (InterruptedException e) {
-					//
-					e.printStackTrace();
-				}
-			}
-			return returnPath;
+			stack.finished();
+			return stack.take(budget);
 		}
 
 		/*
@@ -423,7 +402,7 @@ public class StackEscapePathFinder extends AbstractEscapePathFinder {
 			Node o2 = e1.getDest();
 
 			// Primary comparison is weighted gold value
-			int returnValue = Integer.compare(goldValues.get(o2), goldValues.get(o1));
+			int returnValue = Integer.compare(goldValues[(int) o2.getId()], goldValues[(int) o1.getId()]);
 
 			if (returnValue == 0) { // Edge length
 				returnValue = Integer.compare(e1.length(), e2.length());